@@ -0,0 +1,19 @@
+package app;
+
+import configs.GenericConfig;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+// Configs name agent classes that GenericConfig instantiates reflectively; a native image only keeps
+// what is registered here. ExprCompiler looks up its operators as MethodHandles.
+public class AgentRuntimeHints implements RuntimeHintsRegistrar {
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String className : GenericConfig.BUILTIN_AGENTS) {
+            hints.reflection().registerType(TypeReference.of(className), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+        hints.reflection().registerType(TypeReference.of("configs.ExprCompiler"), MemberCategory.INVOKE_DECLARED_METHODS);
+    }
+}
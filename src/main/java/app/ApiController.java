@@ -2,26 +2,46 @@ package app;
 
 import configs.GenericConfig;
 import configs.Graph;
-import configs.Node;
+import graph.Cascade;
+import graph.GraphProfiler;
+import graph.InFlightTracker;
+import graph.InputLimiter;
+import graph.LoadShedder;
+import graph.MemoCache;
 import graph.Message;
+import graph.ParallelAgent;
+import graph.PureAgent;
 import graph.Topic;
 import graph.TopicEventListener;
+import graph.TopicFilter;
 import graph.TopicManagerSingleton;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api")
 public class ApiController {
 
     private GenericConfig activeConfig;
+    private final GraphSnapshots graphSnapshots = new GraphSnapshots();
+    private final EventStore eventStore;
+    // The running or most recently stopped profile.
+    private volatile GraphProfiler profile;
+
+    public ApiController(Optional<EventStore> eventStore) {
+        this.eventStore = eventStore.orElse(null);
+        EventBus.setStore(this.eventStore);
+        GenericConfig.preloadAgentClasses();
+    }
 
     public record ConfigLoadRequest(String configText) {
     }
@@ -29,6 +49,9 @@ public class ApiController {
     public record PublishRequest(String type, String value) {
     }
 
+    public record EvaluateRequest(Map<String, Double> inputs, List<String> outputs, Long timeoutMs) {
+    }
+
     public record FlowEvent(long ts, EventType type, String from, Double value) {
     }
 
@@ -38,44 +61,6 @@ public class ApiController {
         AGENT_PUBLISH
     }
 
-    private static final class EventBus {
-        private static final int MAX_EVENTS = 500;
-        private static final LinkedList<FlowEvent> events = new LinkedList<>();
-        private static final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
-
-        static synchronized void emit(FlowEvent event) {
-            events.addLast(event);
-            while (events.size() > MAX_EVENTS) {
-                events.removeFirst();
-            }
-            for (SseEmitter emitter : emitters) {
-                try {
-                    emitter.send(SseEmitter.event().data(event));
-                } catch (IOException e) {
-                    emitters.remove(emitter);
-                }
-            }
-        }
-
-        static synchronized List<FlowEvent> getEvents(int limit) {
-            int count = Math.min(limit, events.size());
-            List<FlowEvent> result = new ArrayList<>(count);
-            Iterator<FlowEvent> it = events.descendingIterator();
-            while (it.hasNext() && result.size() < count) {
-                result.add(it.next());
-            }
-            Collections.reverse(result);
-            return result;
-        }
-
-        static void addEmitter(SseEmitter emitter) {
-            emitters.add(emitter);
-            emitter.onCompletion(() -> emitters.remove(emitter));
-            emitter.onTimeout(() -> emitters.remove(emitter));
-            emitter.onError(e -> emitters.remove(emitter));
-        }
-    }
-
     @PostMapping("/config/load")
     public Map<String, Object> loadConfig(@RequestBody ConfigLoadRequest request) {
         try {
@@ -94,46 +79,18 @@ public class ApiController {
             gc.create();
 
             // Cycle detection
-            Graph cycleCheckGraph = new Graph();
-            cycleCheckGraph.createFromTopics();
+            Graph cycleCheckGraph = Graph.current();
             if (cycleCheckGraph.hasCycles()) {
                 gc.close();
                 TopicManagerSingleton.get().clear();
                 throw new IllegalArgumentException("Config contains a cycle - cyclic dependencies are not allowed");
             }
+            int fused = gc.fuseChains(cycleCheckGraph);
+            int scheduled = gc.schedule(cycleCheckGraph);
 
             activeConfig = gc;
 
-            Topic.setListener(new TopicEventListener() {
-                @Override
-                public void onPublish(String topicName, Message msg) {
-                    Double v = Double.isNaN(msg.asDouble) ? null : msg.asDouble;
-                    EventBus.emit(new FlowEvent(
-                            System.currentTimeMillis(),
-                            EventType.TOPIC_PUBLISH,
-                            topicName,
-                            v));
-                }
-
-                @Override
-                public void onClear(String topicName) {
-                    EventBus.emit(new FlowEvent(
-                            System.currentTimeMillis(),
-                            EventType.TOPIC_CLEARED,
-                            topicName,
-                            null));
-                }
-
-                @Override
-                public void onAgentPublish(String agentName, String topicName, Message msg) {
-                    Double v = Double.isNaN(msg.asDouble) ? null : msg.asDouble;
-                    EventBus.emit(new FlowEvent(
-                            System.currentTimeMillis(),
-                            EventType.AGENT_PUBLISH,
-                            agentName,
-                            v));
-                }
-            });
+            installListener();
 
             List<String> topicNames = new ArrayList<>();
             for (Topic t : TopicManagerSingleton.get().getTopics()) {
@@ -141,7 +98,7 @@ public class ApiController {
             }
             Collections.sort(topicNames);
 
-            return Map.of("ok", true, "topics", topicNames);
+            return Map.of("ok", true, "topics", topicNames, "fused", fused, "scheduled", scheduled);
         } catch (Exception e) {
             return Map.of("ok", false, "error", e.getMessage());
         }
@@ -158,10 +115,19 @@ public class ApiController {
         return Map.of("ok", true);
     }
 
+    // With ?await=R1,R2 the response completes asynchronously once the cascade caused by this publish
+    // has settled, carrying the last value of each listed topic (504 on timeout). The publish never
+    // blocks: if a subscriber's mailbox is full, or the topic's rate limit or load shedding refuses
+    // it, nothing is delivered and the answer is 429.
     @PostMapping("/topics/{name}/publish")
-    public Map<String, Object> publish(@PathVariable String name, @RequestBody PublishRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> publish(
+            @PathVariable String name,
+            @RequestBody PublishRequest request,
+            @RequestParam(required = false) List<String> await,
+            @RequestParam(defaultValue = "1000") long timeoutMs) {
         if (activeConfig == null) {
-            return Map.of("ok", false, "error", "No active config loaded");
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.ok(Map.of("ok", false, "error", "No active config loaded")));
         }
 
         Message msg;
@@ -171,9 +137,87 @@ public class ApiController {
             msg = new Message(request.value());
         }
 
-        TopicManagerSingleton.get().getTopic(name).publish(msg);
+        Topic topic = TopicManagerSingleton.get().getTopic(name);
+        InFlightTracker tracker = activeConfig.getInFlightTracker();
+        boolean awaiting = await != null && !await.isEmpty();
+        Cascade cascade = awaiting ? new Cascade().capture(await) : new Cascade();
+        cascade.settled().thenRun(() -> tracker.recordSettle(cascade.getSettleNanos()));
+        Topic.Admission[] admission = new Topic.Admission[1];
+        cascade.run(() -> admission[0] = topic.offer(msg));
+        if (admission[0] != Topic.Admission.ACCEPTED) {
+            cascade.detach();
+            return CompletableFuture.completedFuture(rejected(admission[0]));
+        }
+        if (!awaiting) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("ok", true)));
+        }
+        return settle(cascade, timeoutMs);
+    }
 
-        return Map.of("ok", true);
+    private static ResponseEntity<Map<String, Object>> rejected(Topic.Admission admission) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", "1")
+                .body(Map.of("ok", false, "error", admission == Topic.Admission.SATURATED
+                        ? "Downstream queue full" : "Shed by input rate limit"));
+    }
+
+    // Publishes all inputs as one cascade and answers once every task it caused has finished,
+    // with the last value of each requested output topic.
+    @PostMapping("/evaluate")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> evaluate(@RequestBody EvaluateRequest request) {
+        if (activeConfig == null) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.ok(Map.of("ok", false, "error", "No active config loaded")));
+        }
+        Map<String, Double> inputs = request.inputs() != null ? request.inputs() : Map.of();
+        List<String> outputs = request.outputs() != null ? request.outputs() : List.of();
+        Cascade cascade = new Cascade().capture(outputs);
+        InFlightTracker tracker = activeConfig.getInFlightTracker();
+        cascade.settled().thenRun(() -> tracker.recordSettle(cascade.getSettleNanos()));
+        try {
+            cascade.run(() -> Cascade.publishAll(inputs));
+        } catch (IllegalArgumentException e) {
+            cascade.detach();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("ok", false, "error", e.getMessage())));
+        }
+        return settle(cascade, request.timeoutMs() != null ? request.timeoutMs() : 1000L);
+    }
+
+    @GetMapping("/quiescence")
+    public Map<String, Object> getQuiescence() {
+        if (activeConfig == null) {
+            return Map.of("ok", false, "error", "No active config loaded");
+        }
+        InFlightTracker tracker = activeConfig.getInFlightTracker();
+        return Map.of(
+                "ok", true,
+                "inFlight", tracker.getInFlight(),
+                "quiescent", tracker.isQuiescent(),
+                "settledPublishes", tracker.getSettledCount(),
+                "meanSettleMs", tracker.getMeanSettleMillis(),
+                "maxSettleMs", tracker.getMaxSettleMillis());
+    }
+
+    @PostMapping("/drain")
+    public Map<String, Object> drain(@RequestParam(defaultValue = "2000") long timeoutMs) {
+        if (activeConfig == null) {
+            return Map.of("ok", false, "error", "No active config loaded");
+        }
+        boolean quiescent = activeConfig.drain(timeoutMs, TimeUnit.MILLISECONDS);
+        return Map.of("ok", quiescent, "inFlight", activeConfig.getInFlightTracker().getInFlight());
+    }
+
+    private CompletableFuture<ResponseEntity<Map<String, Object>>> settle(Cascade cascade, long timeoutMs) {
+        return cascade.settled().orTimeout(timeoutMs, TimeUnit.MILLISECONDS).handle((values, error) -> {
+            cascade.detach();
+            Map<String, Object> body = Map.of(
+                    "ok", error == null,
+                    "values", values != null ? values : cascade.getValues());
+            return error == null
+                    ? ResponseEntity.ok(body)
+                    : ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(body);
+        });
     }
 
     @PostMapping("/topics/{name}/clear")
@@ -199,40 +243,248 @@ public class ApiController {
         return Map.of("topics", topicNames);
     }
 
+    @GetMapping("/topics/{name}")
+    public ResponseEntity<Map<String, Object>> getTopic(@PathVariable String name) {
+        Topic topic = TopicManagerSingleton.get().findTopic(name);
+        if (topic == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("ok", false, "error", "Unknown topic"));
+        }
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", topic.name);
+        info.put("id", topic.getId());
+        info.put("subscribers", topic.getSubscriberCount());
+        info.put("publishers", topic.getPublisherCount());
+        info.put("lastValueCached", topic.isLastValueEnabled());
+        info.put("lastValue", Double.isNaN(topic.getLastValue()) ? null : topic.getLastValue());
+        info.put("lastUpdateMillis", topic.getLastUpdateMillis());
+        InputLimiter limiter = topic.getLimiter();
+        if (limiter != null) {
+            info.put("admitted", limiter.getAdmitted());
+            info.put("shed", limiter.getShed());
+        }
+        TopicFilter filter = topic.getFilter();
+        if (filter != null) {
+            info.put("filtered", filter.getDropped());
+        }
+        return ResponseEntity.ok(info);
+    }
+
+    // Adaptive load shedding state and per-input-topic admission counts.
+    @GetMapping("/shedding")
+    public Map<String, Object> getShedding() {
+        LoadShedder shedder = activeConfig != null ? activeConfig.getLoadShedder() : null;
+        Map<String, Object> topics = new TreeMap<>();
+        for (Topic t : TopicManagerSingleton.get().getTopics()) {
+            InputLimiter limiter = t.getLimiter();
+            if (limiter == null) {
+                continue;
+            }
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("ratePerSecond", limiter.getRatePerSecond());
+            counts.put("admitFraction", limiter.getAdmitFraction());
+            counts.put("admitted", limiter.getAdmitted());
+            counts.put("shedByRate", limiter.getShedByRate());
+            counts.put("shedByLoad", limiter.getShedByLoad());
+            topics.put(t.name, counts);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("enabled", shedder != null);
+        if (shedder != null) {
+            body.put("targetP99Ms", shedder.getTargetNanos() / 1e6);
+            body.put("intervalMs", shedder.getIntervalMillis());
+            body.put("lastP99Ms", shedder.getLastP99Nanos() < 0 ? null : shedder.getLastP99Nanos() / 1e6);
+            body.put("queueFill", shedder.getLastQueueFill());
+            body.put("admitFraction", shedder.getAdmitFraction());
+        }
+        body.put("topics", topics);
+        return body;
+    }
+
+    // Cached last values of topics with the last-value cache on, optionally restricted to ?names=A,B.
+    // Served from the topics' cached messages, so it never waits on or enters the engine. Not under
+    // /topics, where it would hide a topic named "values".
+    @GetMapping("/values")
+    public Map<String, Object> getTopicValues(@RequestParam(required = false) List<String> names) {
+        Map<String, Double> values = names == null || names.isEmpty()
+                ? TopicManagerSingleton.get().getLastValues()
+                : TopicManagerSingleton.get().getLastValues(names);
+        return Map.of("values", values);
+    }
+
+    // With ?rates=true the full graph is returned with each edge's message rate from the current
+    // or last profile, and its weight relative to the busiest edge (0..1), never as a 304.
     @GetMapping("/graph")
-    public Map<String, Object> getGraph() {
-        Graph g = new Graph();
-        g.createFromTopics();
+    public ResponseEntity<Map<String, Object>> getGraph(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) String epoch,
+            @RequestParam(required = false) String around,
+            @RequestParam(defaultValue = "1") int depth,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "0") int limit,
+            @RequestParam(defaultValue = "false") boolean rates) {
+        GraphSnapshots.Snapshot current = graphSnapshots.current();
+        String etag = current.etag();
+        if (etag.equals(ifNoneMatch) && around == null && limit <= 0 && !rates) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        Map<String, Object> body;
+        if (rates) {
+            GraphProfiler p = profile;
+            body = Map.of("version", current.version(), "nodes", current.nodes(),
+                    "edges", GraphSnapshots.withRates(current, p), "profiling", p != null && p.isRunning());
+        } else if (around != null) {
+            body = GraphSnapshots.neighborhood(current, around, Math.max(depth, 0));
+            if (body == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Node not found"));
+            }
+        } else if (limit > 0) {
+            body = GraphSnapshots.page(current, offset, limit);
+        } else {
+            GraphSnapshots.Snapshot base = since == null ? null : graphSnapshots.at(epoch, since);
+            if (base != null) {
+                body = GraphSnapshots.delta(base, current);
+            } else {
+                body = Map.of("version", current.version(), "epoch", GraphSnapshots.EPOCH,
+                        "nodes", current.nodes(), "edges", current.edges());
+            }
+        }
+        return ResponseEntity.ok().eTag(etag).body(body);
+    }
+
+    @PostMapping("/profiler/start")
+    public Map<String, Object> startProfiler(@RequestParam(defaultValue = "16") int sampleEvery) {
+        if (sampleEvery < 1) {
+            return Map.of("ok", false, "error", "sampleEvery must be >= 1");
+        }
+        profile = GraphProfiler.start(sampleEvery);
+        if (activeConfig != null) {
+            installListener();
+        }
+        return Map.of("ok", true, "sampleEvery", sampleEvery);
+    }
 
-        List<Map<String, String>> nodes = new ArrayList<>();
-        List<Map<String, String>> edges = new ArrayList<>();
+    @PostMapping("/profiler/stop")
+    public Map<String, Object> stopProfiler() {
+        GraphProfiler p = profile;
+        if (p == null) {
+            return Map.of("ok", false, "error", "No profile");
+        }
+        p.stop();
+        if (activeConfig != null) {
+            installListener();
+        }
+        return profileReport(p);
+    }
 
-        for (Node node : g) {
-            String id = node.getName();
-            String kind = node.getKind();
-            String label = node.getLabel();
-            nodes.add(Map.of("id", id, "kind", kind, "label", label));
+    // Hotspots (agents by self time) and per-topic and per-edge message rates.
+    @GetMapping("/profiler")
+    public Map<String, Object> getProfile() {
+        GraphProfiler p = profile;
+        return p == null ? Map.of("ok", false, "error", "No profile") : profileReport(p);
+    }
+
+    // Folded stacks ("input;agent;topic;agent microseconds") for flame graph tools.
+    @GetMapping(value = "/profiler/flame", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getFlameGraph() {
+        GraphProfiler p = profile;
+        if (p == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No profile\n");
         }
+        return ResponseEntity.ok(p.folded());
+    }
+
+    private static Map<String, Object> profileReport(GraphProfiler p) {
+        double seconds = Math.max(p.getElapsedSeconds(), 1e-9);
+        List<Map<String, Object>> topics = new ArrayList<>();
+        p.getTopicCounts().forEach((name, n) -> topics.add(Map.of("topic", name, "count", n, "rate", n / seconds)));
+        topics.sort(Comparator.comparingLong((Map<String, Object> m) -> (Long) m.get("count")).reversed());
+        List<Map<String, Object>> edges = new ArrayList<>();
+        p.getEdgeCounts().forEach((edge, n) ->
+                edges.add(Map.of("from", edge.get(0), "to", edge.get(1), "count", n, "rate", n / seconds)));
+        edges.sort(Comparator.comparingLong((Map<String, Object> m) -> (Long) m.get("count")).reversed());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ok", true);
+        body.put("running", p.isRunning());
+        body.put("elapsedSeconds", p.getElapsedSeconds());
+        body.put("sampleEvery", p.getSampleEvery());
+        body.put("hotspots", p.hotspots());
+        body.put("topics", topics);
+        body.put("edges", edges);
+        return body;
+    }
 
-        for (Node node : g) {
-            String id = node.getName();
-            for (Node neighbor : node.getEdges()) {
-                edges.add(Map.of("from", id, "to", neighbor.getName()));
+    private void installListener() {
+        GraphProfiler p = GraphProfiler.getActive();
+        Topic.setListener(p == null ? EventBus.LISTENER : TopicEventListener.of(EventBus.LISTENER, p));
+    }
+
+    @GetMapping("/agents/exec")
+    public Map<String, Object> getExecStats() {
+        List<Map<String, Object>> agents = new ArrayList<>();
+        if (activeConfig != null) {
+            for (ParallelAgent pa : activeConfig.getRunningAgents()) {
+                agents.add(Map.of(
+                        "agent", pa.getAgentId(),
+                        "mode", pa.isInline() ? "FUSED" : pa.getMode().name(),
+                        "inline", pa.isRunningInline(),
+                        "avgCallbackUs", pa.getAvgCallbackNanos() / 1000.0,
+                        "queued", pa.getQueueSize()));
             }
         }
+        return Map.of("agents", agents);
+    }
 
-        return Map.of("nodes", nodes, "edges", edges);
+    @GetMapping("/agents/memo")
+    public Map<String, Object> getMemoStats() {
+        List<Map<String, Object>> agents = new ArrayList<>();
+        if (activeConfig != null) {
+            for (ParallelAgent pa : activeConfig.getRunningAgents()) {
+                if (pa.getAgent() instanceof PureAgent pure && pure.getMemo() != null) {
+                    MemoCache memo = pure.getMemo();
+                    agents.add(Map.of(
+                            "agent", pa.getAgentId(),
+                            "capacity", memo.capacity(),
+                            "hits", memo.getHits(),
+                            "misses", memo.getMisses(),
+                            "hitRatio", memo.getHitRatio(),
+                            "suppressed", memo.getSuppressed()));
+                }
+            }
+        }
+        return Map.of("agents", agents);
     }
 
+    // Each client streams preserialized frames from the event ring on its own (virtual) thread.
     @GetMapping(value = "/events/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamEvents() {
-        SseEmitter emitter = new SseEmitter(0L);
-        EventBus.addEmitter(emitter);
-        return emitter;
+    public ResponseEntity<StreamingResponseBody> streamEvents() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .header("X-Accel-Buffering", "no")
+                .body(EventBus::stream);
     }
 
     @GetMapping("/events")
     public Map<String, Object> getEvents(@RequestParam(defaultValue = "50") int limit) {
         return Map.of("events", EventBus.getEvents(limit));
     }
+
+    // Events in [from, to] (epoch millis) from the on-disk store, optionally for one topic or agent
+    // and one event type. Requires cascade.events.dir.
+    @GetMapping("/events/query")
+    public ResponseEntity<Map<String, Object>> queryEvents(
+            @RequestParam(defaultValue = "0") long from,
+            @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) EventType type,
+            @RequestParam(defaultValue = "1000") int limit) {
+        if (eventStore == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("ok", false, "error", "Event store disabled; set cascade.events.dir"));
+        }
+        int max = Math.max(1, Math.min(limit, 100_000));
+        List<FlowEvent> events = eventStore.query(from, to, source, type, max);
+        return ResponseEntity.ok(Map.of("ok", true, "events", events, "truncated", events.size() >= max));
+    }
 }
@@ -2,8 +2,10 @@ package app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(AgentRuntimeHints.class)
 public class Application {
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
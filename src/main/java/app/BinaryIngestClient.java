@@ -0,0 +1,68 @@
+package app;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+// Blocking client for BinaryIngestServer: records are batched into one frame until flush() or the buffer fills.
+public final class BinaryIngestClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ByteBuffer frame;
+
+    public BinaryIngestClient(InetSocketAddress address, int frameBytes) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.frame = ByteBuffer.allocate(frameBytes);
+        this.frame.position(4);
+    }
+
+    public void define(int id, String topic) throws IOException {
+        if (id < 0 || id > BinaryIngestServer.MAX_TOPIC_ID) {
+            throw new IllegalArgumentException("Topic id out of range: " + id);
+        }
+        byte[] name = topic.getBytes(StandardCharsets.UTF_8);
+        ensure(1 + 4 + 2 + name.length);
+        frame.put(BinaryIngestServer.DEFINE).putInt(id).putShort((short) name.length).put(name);
+    }
+
+    public void publish(int id, double value) throws IOException {
+        ensure(1 + 4 + 8);
+        frame.put(BinaryIngestServer.DOUBLE).putInt(id).putDouble(value);
+    }
+
+    public void publish(int id, byte[] data) throws IOException {
+        ensure(1 + 4 + 4 + data.length);
+        frame.put(BinaryIngestServer.BYTES).putInt(id).putInt(data.length).put(data);
+    }
+
+    public void flush() throws IOException {
+        if (frame.position() == 4) {
+            return;
+        }
+        frame.putInt(0, frame.position() - 4);
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        frame.clear();
+        frame.position(4);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (4 + bytes > frame.capacity()) {
+            throw new IllegalArgumentException("Record larger than frame buffer");
+        }
+        if (frame.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
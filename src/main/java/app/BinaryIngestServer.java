@@ -0,0 +1,266 @@
+package app;
+
+import graph.Message;
+import graph.Topic;
+import graph.TopicManager;
+import graph.TopicManagerSingleton;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Single-threaded NIO listener publishing binary frames straight into the TopicManager.
+ *
+ * Frame: int32 length, then records until the frame ends (big-endian):
+ * DEFINE 0x01 int32 id, uint16 len, UTF-8 name  - binds a connection-local id (0..MAX_TOPIC_ID) to a topic
+ * DOUBLE 0x02 int32 id, float64 value
+ * BYTES  0x03 int32 id, int32 len, bytes
+ *
+ * Records must end within their frame. Topic names are decoded once per DEFINE; publishes resolve
+ * ids through an array, re-resolved by name whenever the TopicManager's topology version moves, so a
+ * cleared or reloaded config is picked up without a new DEFINE. A publish that blocks on a full
+ * mailbox stalls the selector, which pushes back on senders through TCP. Anything a connection sends
+ * that fails, down to an Error, closes that connection only; the selector keeps serving the others.
+ */
+public final class BinaryIngestServer implements AutoCloseable {
+    public static final byte DEFINE = 0x01;
+    public static final byte DOUBLE = 0x02;
+    public static final byte BYTES = 0x03;
+    // Ids index per-connection arrays, so a client cannot make the server allocate more than this.
+    public static final int MAX_TOPIC_ID = 65535;
+
+    private static final int INITIAL_BUFFER = 64 * 1024;
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+    private static final System.Logger LOG = System.getLogger(BinaryIngestServer.class.getName());
+
+    private final InetSocketAddress bindAddress;
+    private final BiConsumer<Topic, Message> sink;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread loop;
+    private volatile boolean running;
+
+    private static final class Connection {
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER);
+        private String[] names = new String[16];
+        private Topic[] topics = new Topic[16];
+        // TopicManager version the topics were resolved at.
+        private long version;
+    }
+
+    public BinaryIngestServer(InetSocketAddress bindAddress) {
+        this(bindAddress, Topic::publish);
+    }
+
+    // sink replaces the plain publish, e.g. to tag messages arriving from another partition.
+    public BinaryIngestServer(InetSocketAddress bindAddress, BiConsumer<Topic, Message> sink) {
+        this.bindAddress = bindAddress;
+        this.sink = sink;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(bindAddress);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        loop = new Thread(this::runLoop, "BinaryIngestServer");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        try {
+                            read(key);
+                        } catch (Throwable t) {
+                            LOG.log(System.Logger.Level.ERROR, "Closing ingest connection after failure", t);
+                            closeQuietly(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection conn = (Connection) key.attachment();
+        try {
+            if (channel.read(conn.buffer) < 0) {
+                closeQuietly(key);
+                return;
+            }
+            conn.buffer.flip();
+            while (conn.buffer.remaining() >= 4) {
+                int length = conn.buffer.getInt(conn.buffer.position());
+                if (length < 0 || length > MAX_FRAME) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (conn.buffer.remaining() < 4 + length) {
+                    if (conn.buffer.capacity() < 4 + length) {
+                        grow(conn, 4 + length);
+                        return;
+                    }
+                    break;
+                }
+                conn.buffer.position(conn.buffer.position() + 4);
+                int limit = conn.buffer.limit();
+                // A record running past its frame underflows here and closes the connection.
+                conn.buffer.limit(conn.buffer.position() + length);
+                while (conn.buffer.hasRemaining()) {
+                    readRecord(conn, conn.buffer);
+                }
+                conn.buffer.limit(limit);
+            }
+            conn.buffer.compact();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(key);
+        }
+    }
+
+    private void grow(Connection conn, int needed) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(needed, conn.buffer.capacity() * 2));
+        bigger.put(conn.buffer);
+        conn.buffer = bigger;
+    }
+
+    private void readRecord(Connection conn, ByteBuffer buf) throws IOException {
+        byte type = buf.get();
+        int id = buf.getInt();
+        if (id < 0 || id > MAX_TOPIC_ID) {
+            throw new IOException("Bad topic id " + id);
+        }
+        switch (type) {
+            case DEFINE -> {
+                int len = checkLength(buf, Short.toUnsignedInt(buf.getShort()));
+                byte[] name = new byte[len];
+                buf.get(name);
+                if (id >= conn.topics.length) {
+                    int size = Math.min(Math.max(id + 1, conn.topics.length * 2), MAX_TOPIC_ID + 1);
+                    conn.names = Arrays.copyOf(conn.names, size);
+                    conn.topics = Arrays.copyOf(conn.topics, size);
+                }
+                conn.names[id] = new String(name, StandardCharsets.UTF_8);
+                conn.topics[id] = TopicManagerSingleton.get().findTopic(conn.names[id]);
+            }
+            case DOUBLE -> publish(conn, id, new Message(buf.getDouble()));
+            case BYTES -> {
+                byte[] data = new byte[checkLength(buf, buf.getInt())];
+                buf.get(data);
+                publish(conn, id, new Message(data));
+            }
+            default -> throw new IOException("Bad record type " + type);
+        }
+    }
+
+    // A length must fit in what is left of the frame; checked before anything is allocated for it.
+    private static int checkLength(ByteBuffer buf, int len) throws IOException {
+        if (len < 0 || len > buf.remaining()) {
+            throw new IOException("Bad record length " + len);
+        }
+        return len;
+    }
+
+    private void publish(Connection conn, int id, Message msg) {
+        TopicManager manager = TopicManagerSingleton.get();
+        long version = manager.getVersion();
+        if (version != conn.version) {
+            // Topics were created, rewired or cleared since the last publish: resolve the names again.
+            conn.version = version;
+            for (int i = 0; i < conn.names.length; i++) {
+                conn.topics[i] = conn.names[i] == null ? null : manager.findTopic(conn.names[i]);
+            }
+        }
+        Topic topic = id < conn.topics.length ? conn.topics[id] : null;
+        if (topic == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+        sink.accept(topic, msg);
+        published.incrementAndGet();
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
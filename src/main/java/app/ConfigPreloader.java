@@ -0,0 +1,36 @@
+package app;
+
+import app.ApiController.ConfigLoadRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Loads --cascade.config.preload once the context is up, before the application reports ready. A
+// config that fails to load fails the startup.
+@Component
+public class ConfigPreloader implements ApplicationRunner {
+    private final ApiController api;
+    private final String preloadConfig;
+
+    public ConfigPreloader(ApiController api, @Value("${cascade.config.preload:}") String preloadConfig) {
+        this.api = api;
+        this.preloadConfig = preloadConfig;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (preloadConfig.isEmpty()) {
+            return;
+        }
+        Map<String, Object> result = api.loadConfig(new ConfigLoadRequest(Files.readString(Path.of(preloadConfig))));
+        if (!Boolean.TRUE.equals(result.get("ok"))) {
+            throw new IllegalStateException("Cannot preload " + preloadConfig + ": " + result.get("error"));
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package app;
+
+import app.ApiController.EventType;
+import app.ApiController.FlowEvent;
+import graph.Message;
+import graph.TopicEventListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flow events for the UI. Capture writes into a fixed ring of preallocated slots with primitive
+ * fields and serializes each event once, into the slot's own SSE frame. Stream clients copy frames
+ * from the ring to their sockets on their own threads, so once warmed up a publish allocates nothing
+ * here and a slow client can only lose events, never block the engine. The event store, if any, gets
+ * each event handed to its own writer thread and never writes to disk on the emitting thread.
+ */
+public final class EventBus {
+    public static final int CAPACITY = 512;
+    private static final int MASK = CAPACITY - 1;
+    // An idle stream writes an SSE comment this often, so a client that went away is noticed.
+    private static final long HEARTBEAT_MILLIS = 5_000;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] TYPE_NAMES = new byte[EventType.values().length][];
+    private static final long[] POW10 = new long[18];
+
+    private static final Slot[] ring = new Slot[CAPACITY];
+    private static final ConcurrentHashMap<String, byte[]> names = new ConcurrentHashMap<>();
+    private static final Object writeLock = new Object();
+    private static final Object signal = new Object();
+    private static long next;
+    private static volatile long published;
+    private static volatile int waiters;
+    private static volatile EventStore store;
+
+    static {
+        for (EventType type : EventType.values()) {
+            TYPE_NAMES[type.ordinal()] = ('"' + type.name() + '"').getBytes(StandardCharsets.UTF_8);
+        }
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Slot();
+        }
+    }
+
+    private static final class Slot {
+        // Sequence of the event held, or -1 while being rewritten (seqlock for readers).
+        private volatile long seq = -1;
+        private long ts;
+        private EventType type;
+        private String source;
+        private double value;
+        private byte[] frame = new byte[256];
+        private int length;
+    }
+
+    private EventBus() {
+    }
+
+    // Installed as the Topic listener while a config is loaded.
+    public static final TopicEventListener LISTENER = new TopicEventListener() {
+        @Override
+        public void onPublish(String topicName, Message msg) {
+            emit(msg.date.getTime(), EventType.TOPIC_PUBLISH, topicName, msg.asDouble);
+        }
+
+        @Override
+        public void onClear(String topicName) {
+            emit(System.currentTimeMillis(), EventType.TOPIC_CLEARED, topicName, Double.NaN);
+        }
+
+        @Override
+        public void onAgentPublish(String agentName, String topicName, Message msg) {
+            emit(msg.date.getTime(), EventType.AGENT_PUBLISH, agentName, msg.asDouble);
+        }
+    };
+
+    static void setStore(EventStore eventStore) {
+        store = eventStore;
+    }
+
+    // value NaN means "no value".
+    public static void emit(long ts, EventType type, String source, double value) {
+        synchronized (writeLock) {
+            long seq = next++;
+            Slot s = ring[(int) seq & MASK];
+            s.seq = -1;
+            // Keeps the field writes below from becoming visible before the slot is marked.
+            VarHandle.storeStoreFence();
+            s.ts = ts;
+            s.type = type;
+            s.source = source;
+            s.value = value;
+            serialize(s);
+            s.seq = seq;
+            published = seq + 1;
+            EventStore st = store;
+            if (st != null) {
+                st.offer(ts, type, source, value);
+            }
+        }
+        if (waiters > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    // The most recent events, oldest first (at most CAPACITY).
+    public static List<FlowEvent> getEvents(int limit) {
+        long head = published;
+        long from = Math.max(0, head - Math.min(Math.max(limit, 0), CAPACITY));
+        List<FlowEvent> result = new ArrayList<>((int) (head - from));
+        for (long seq = from; seq < head; seq++) {
+            Slot s = ring[(int) seq & MASK];
+            long ts = s.ts;
+            EventType type = s.type;
+            String source = s.source;
+            double value = s.value;
+            VarHandle.loadLoadFence();
+            if (s.seq == seq) {
+                result.add(new FlowEvent(ts, type, source, Double.isNaN(value) ? null : value));
+            }
+        }
+        return result;
+    }
+
+    public static long getPublishedCount() {
+        return published;
+    }
+
+    // Writes SSE frames for every new event to out until the client goes away, which shows up as an
+    // IOException from a frame or, while idle, from the heartbeat. Clients more than CAPACITY events
+    // behind skip ahead to the oldest event still in the ring.
+    public static void stream(OutputStream out) throws IOException {
+        byte[] buf = new byte[512];
+        long cursor = published;
+        while (true) {
+            long head = published;
+            if (cursor == head) {
+                out.flush();
+                if (!awaitPublish(cursor, HEARTBEAT_MILLIS)) {
+                    out.write(HEARTBEAT);
+                }
+                continue;
+            }
+            if (head - cursor > CAPACITY) {
+                cursor = head - CAPACITY;
+            }
+            Slot s = ring[(int) cursor & MASK];
+            if (s.seq != cursor) {
+                cursor++;
+                continue;
+            }
+            byte[] frame = s.frame;
+            int length = Math.min(s.length, frame.length);
+            if (buf.length < length) {
+                buf = new byte[frame.length];
+            }
+            System.arraycopy(frame, 0, buf, 0, length);
+            VarHandle.loadLoadFence();
+            if (s.seq == cursor) {
+                out.write(buf, 0, length);
+            }
+            cursor++;
+        }
+    }
+
+    // False if nothing was published within timeoutMillis.
+    private static boolean awaitPublish(long seen, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (signal) {
+            waiters++;
+            try {
+                // Timed wait bounds the delay should a wakeup race the waiter count.
+                while (published == seen) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    signal.wait(Math.min(left, 100));
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                waiters--;
+            }
+        }
+    }
+
+    // data: {"ts":1,"type":"TOPIC_PUBLISH","from":"A","value":1.5}\n\n
+    private static void serialize(Slot s) {
+        byte[] name = names.get(s.source);
+        if (name == null) {
+            name = names.computeIfAbsent(s.source, EventBus::quote);
+        }
+        byte[] type = TYPE_NAMES[s.type.ordinal()];
+        int max = 64 + type.length + name.length + 32;
+        if (s.frame.length < max) {
+            s.frame = new byte[max];
+        }
+        byte[] f = s.frame;
+        int p = put(f, 0, "data: {\"ts\":");
+        p = putLong(f, p, s.ts);
+        p = put(f, p, ",\"type\":");
+        System.arraycopy(type, 0, f, p, type.length);
+        p += type.length;
+        p = put(f, p, ",\"from\":");
+        System.arraycopy(name, 0, f, p, name.length);
+        p += name.length;
+        p = put(f, p, ",\"value\":");
+        p = putDouble(f, p, s.value);
+        p = put(f, p, "}\n\n");
+        s.length = p;
+    }
+
+    private static int put(byte[] f, int p, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            f[p++] = (byte) ascii.charAt(i);
+        }
+        return p;
+    }
+
+    private static int putLong(byte[] f, int p, long v) {
+        if (v < 0) {
+            if (v == Long.MIN_VALUE) {
+                return put(f, p, "-9223372036854775808");
+            }
+            f[p++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) {
+            digits++;
+        }
+        for (int i = p + digits - 1; i >= p; i--) {
+            f[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return p + digits;
+    }
+
+    // Shortest decimal with up to 17 fraction digits that reads back as the same double; values
+    // outside that range fall back to Double.toString. NaN and infinities have no JSON form: null.
+    private static int putDouble(byte[] f, int p, double v) {
+        if (!Double.isFinite(v)) {
+            return put(f, p, "null");
+        }
+        if (Math.abs(v) >= 1e15 || (v != 0 && Math.abs(v) < 1e-6)) {
+            return put(f, p, Double.toString(v));
+        }
+        if (v < 0 || (v == 0 && 1 / v < 0)) {
+            f[p++] = '-';
+            v = -v;
+        }
+        for (int d = 0; d < POW10.length; d++) {
+            double scaled = Math.rint(v * POW10[d]);
+            if (scaled >= 9.007199254740992E15) {
+                break;
+            }
+            if (scaled / POW10[d] == v) {
+                long m = (long) scaled;
+                long whole = m / POW10[d];
+                p = putLong(f, p, whole);
+                f[p++] = '.';
+                if (d == 0) {
+                    f[p++] = '0';
+                    return p;
+                }
+                long frac = m % POW10[d];
+                for (int i = d - 1; i >= 0; i--) {
+                    f[p + i] = (byte) ('0' + frac % 10);
+                    frac /= 10;
+                }
+                return p + d;
+            }
+        }
+        return put(f, p, Double.toString(v));
+    }
+
+    private static byte[] quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,572 @@
+package app;
+
+import app.ApiController.EventType;
+import app.ApiController.FlowEvent;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Append-only FlowEvent store on disk. Events go into fixed-size segments, each a memory-mapped file
+ * with one column per field (timestamp, value, source id, type) so a query only touches the columns
+ * it filters on. Source names (topics and agents) are interned to ids in a separate dictionary file.
+ *
+ * Queries skip segments whose time range or source set cannot match, then binary-search the
+ * timestamp column for the window. A query for one source walks that source's row list in each
+ * segment (an in-heap index of 4 bytes per row, rebuilt on open) instead of every row in the window.
+ * Timestamps are clamped to be non-decreasing on append.
+ *
+ * The event bus hands events over with offer(), which only copies them into a bounded pending
+ * ring; the store's own writer thread appends them, so a slow disk never holds up an emitter.
+ * Events arriving while the ring is full are dropped and counted.
+ *
+ * Retention drops whole segments beyond a count or age limit when a new segment is started. A dropped
+ * segment is unmapped and deleted as soon as no query is reading it, rather than when the GC gets to
+ * its buffer.
+ */
+public final class EventStore implements AutoCloseable {
+    private static final int MAGIC = 0x43474556;
+    private static final int HEADER = 64;
+    private static final int COUNT_OFFSET = 8;
+    private static final int MIN_TS_OFFSET = 16;
+    private static final int MAX_TS_OFFSET = 24;
+    private static final String SOURCES_FILE = "sources.dat";
+    // sun.misc.Unsafe.invokeCleaner, bound: unmaps a segment's buffer right away. Null if the JDK
+    // does not offer it, which leaves unmapping to the GC.
+    private static final MethodHandle UNMAP = findUnmap();
+    private static final EventType[] TYPES = EventType.values();
+    private static final int PENDING = 8192;
+
+    private final Path dir;
+    private final int segmentEvents;
+    private final int maxSegments;
+    private final long maxAgeMillis;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> sourceIds = new HashMap<>();
+    private volatile String[] sourceNames = new String[0];
+    private DataOutputStream sourcesOut;
+    private long nextSegment;
+    private long lastTs = Long.MIN_VALUE;
+
+    // Events offered but not yet appended, as a ring of parallel arrays guarded by pending.
+    private final Object pending = new Object();
+    private final long[] pendingTs = new long[PENDING];
+    private final EventType[] pendingTypes = new EventType[PENDING];
+    private final String[] pendingSources = new String[PENDING];
+    private final double[] pendingValues = new double[PENDING];
+    private int pendingHead;
+    private int pendingCount;
+    private long accepted;
+    private long written;
+    private long dropped;
+    private boolean closing;
+    private Thread writer;
+
+    private static final class Segment {
+        private final Path file;
+        private final int capacity;
+        private final MappedByteBuffer map;
+        private final LongBuffer ts;
+        private final DoubleBuffer values;
+        private final IntBuffer sources;
+        private final ByteBuffer types;
+        // Row numbers per source id, ascending; guarded by this segment's lock. Rows below a
+        // source's count are never rewritten, so a reader may use a snapshot without the lock.
+        private int[][] rowsBySource = new int[16][];
+        private int[] rowCounts = new int[16];
+        // One reference for the store's segment list plus one per running query; unmapped at zero.
+        private final AtomicInteger refs = new AtomicInteger(1);
+        // Set by retention: the file goes away with the last reference.
+        private volatile boolean dropped;
+        private volatile int count;
+        private volatile long minTs;
+        private volatile long maxTs;
+
+        private Segment(Path file, int capacity, boolean create) throws IOException {
+            this.file = file;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                long size = create ? HEADER + 21L * capacity : ch.size();
+                map = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            if (create) {
+                map.putInt(0, MAGIC);
+                map.putInt(4, capacity);
+                this.capacity = capacity;
+            } else {
+                if (map.getInt(0) != MAGIC) {
+                    throw new IOException("Not an event segment: " + file);
+                }
+                this.capacity = map.getInt(4);
+            }
+            ts = map.slice(HEADER, 8 * this.capacity).asLongBuffer();
+            values = map.slice(HEADER + 8 * this.capacity, 8 * this.capacity).asDoubleBuffer();
+            sources = map.slice(HEADER + 16 * this.capacity, 4 * this.capacity).asIntBuffer();
+            types = map.slice(HEADER + 20 * this.capacity, this.capacity);
+            if (!create) {
+                minTs = map.getLong(MIN_TS_OFFSET);
+                maxTs = map.getLong(MAX_TS_OFFSET);
+                int n = map.getInt(COUNT_OFFSET);
+                for (int i = 0; i < n; i++) {
+                    index(sources.get(i), i);
+                }
+                count = n;
+            }
+        }
+
+        void append(long t, int type, int source, double value) {
+            int i = count;
+            ts.put(i, t);
+            values.put(i, value);
+            sources.put(i, source);
+            types.put(i, (byte) type);
+            index(source, i);
+            if (i == 0) {
+                minTs = t;
+                map.putLong(MIN_TS_OFFSET, t);
+            }
+            maxTs = t;
+            map.putLong(MAX_TS_OFFSET, t);
+            map.putInt(COUNT_OFFSET, i + 1);
+            count = i + 1;
+        }
+
+        private synchronized void index(int source, int row) {
+            if (source >= rowsBySource.length) {
+                int size = Math.max(source + 1, rowsBySource.length * 2);
+                rowsBySource = Arrays.copyOf(rowsBySource, size);
+                rowCounts = Arrays.copyOf(rowCounts, size);
+            }
+            int[] rows = rowsBySource[source];
+            int n = rowCounts[source];
+            if (rows == null || n == rows.length) {
+                rows = rows == null ? new int[64] : Arrays.copyOf(rows, n * 2);
+                rowsBySource[source] = rows;
+            }
+            rows[n] = row;
+            rowCounts[source] = n + 1;
+        }
+
+        // The source's rows so far; the first rowCount(source) entries are valid.
+        synchronized int[] rows(int source) {
+            return source < rowsBySource.length ? rowsBySource[source] : null;
+        }
+
+        synchronized int rowCount(int source) {
+            return source < rowCounts.length ? rowCounts[source] : 0;
+        }
+
+        // Pins the segment for a query; false if it has already been dropped.
+        boolean acquire() {
+            while (true) {
+                int r = refs.get();
+                if (r == 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(r, r + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        // The last release unmaps the file, and deletes it if retention dropped the segment.
+        void release() {
+            if (refs.decrementAndGet() != 0) {
+                return;
+            }
+            if (!dropped) {
+                map.force();
+            }
+            if (UNMAP != null) {
+                try {
+                    UNMAP.invokeExact((ByteBuffer) map);
+                } catch (Throwable e) {
+                    // left to the GC
+                }
+            }
+            if (dropped) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // already out of the segment list; a leftover file is only disk space
+                }
+            }
+        }
+
+        // First row in [0, n) with ts >= t.
+        int lowerBound(int n, long t) {
+            int lo = 0;
+            int hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ts.get(mid) < t) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    public EventStore(Path dir, int segmentEvents, int maxSegments, long maxAgeMillis) throws IOException {
+        if (segmentEvents <= 0) {
+            throw new IllegalArgumentException("segmentEvents must be > 0");
+        }
+        this.dir = dir;
+        this.segmentEvents = segmentEvents;
+        this.maxSegments = maxSegments;
+        this.maxAgeMillis = maxAgeMillis;
+        Files.createDirectories(dir);
+        loadSources();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".seg")).sorted().toList()) {
+                Segment s = new Segment(file, 0, false);
+                segments.add(s);
+                nextSegment = Math.max(nextSegment, segmentNumber(file) + 1);
+                if (s.count > 0) {
+                    lastTs = Math.max(lastTs, s.maxTs);
+                }
+            }
+        }
+        sourcesOut = new DataOutputStream(Files.newOutputStream(dir.resolve(SOURCES_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    private void loadSources() throws IOException {
+        Path file = dir.resolve(SOURCES_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                String name = in.readUTF();
+                names.add(name);
+                valid += 2 + name.getBytes(StandardCharsets.UTF_8).length;
+            }
+        } catch (EOFException end) {
+            // a torn last entry is cut off so later appends keep their ids
+        }
+        if (valid < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+            }
+        }
+        for (int i = 0; i < names.size(); i++) {
+            sourceIds.put(names.get(i), i);
+        }
+        sourceNames = names.toArray(new String[0]);
+    }
+
+    private static MethodHandle findUnmap() {
+        try {
+            Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+            Field f = unsafe.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafe, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(f.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    // value NaN means "no value".
+    public synchronized void append(long ts, EventType type, String source, double value) {
+        try {
+            Segment s = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (s == null || s.count == s.capacity) {
+                s = roll(ts);
+            }
+            lastTs = Math.max(lastTs, ts);
+            s.append(lastTs, type.ordinal(), intern(source), value);
+        } catch (IOException e) {
+            throw new IllegalStateException("Event store append failed", e);
+        }
+    }
+
+    // Queues an event for the writer thread without blocking. It is dropped (see getDropped) if
+    // PENDING events are already waiting or the store is closing.
+    public void offer(long ts, EventType type, String source, double value) {
+        synchronized (pending) {
+            if (closing || pendingCount == PENDING) {
+                dropped++;
+                return;
+            }
+            int i = (pendingHead + pendingCount) & (PENDING - 1);
+            pendingTs[i] = ts;
+            pendingTypes[i] = type;
+            pendingSources[i] = source;
+            pendingValues[i] = value;
+            accepted++;
+            if (pendingCount++ == 0) {
+                if (writer == null) {
+                    writer = new Thread(this::writeLoop, "EventStore-" + dir.getFileName());
+                    writer.setDaemon(true);
+                    writer.start();
+                }
+                pending.notifyAll();
+            }
+        }
+    }
+
+    // Takes offered events in batches and appends them, until close() has been called and the
+    // pending ring is empty.
+    private void writeLoop() {
+        long[] ts = new long[256];
+        EventType[] types = new EventType[ts.length];
+        String[] sources = new String[ts.length];
+        double[] values = new double[ts.length];
+        while (true) {
+            int n;
+            synchronized (pending) {
+                while (pendingCount == 0 && !closing) {
+                    try {
+                        pending.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (pendingCount == 0) {
+                    return;
+                }
+                n = Math.min(pendingCount, ts.length);
+                for (int k = 0; k < n; k++) {
+                    int i = (pendingHead + k) & (PENDING - 1);
+                    ts[k] = pendingTs[i];
+                    types[k] = pendingTypes[i];
+                    sources[k] = pendingSources[i];
+                    values[k] = pendingValues[i];
+                    pendingSources[i] = null;
+                }
+                pendingHead = (pendingHead + n) & (PENDING - 1);
+                pendingCount -= n;
+            }
+            for (int k = 0; k < n; k++) {
+                try {
+                    append(ts[k], types[k], sources[k], values[k]);
+                } catch (IllegalStateException e) {
+                    synchronized (pending) {
+                        dropped++;
+                    }
+                }
+            }
+            synchronized (pending) {
+                written += n;
+                pending.notifyAll();
+            }
+        }
+    }
+
+    // Blocks until the writer thread has processed every event offered so far.
+    public void awaitWritten() throws InterruptedException {
+        synchronized (pending) {
+            long target = accepted;
+            while (written < target && writer != null && writer.isAlive()) {
+                pending.wait(100);
+            }
+        }
+    }
+
+    // Offered events that were never stored: the pending ring was full, the store was closing, or
+    // the append failed.
+    public long getDropped() {
+        synchronized (pending) {
+            return dropped;
+        }
+    }
+
+    private int intern(String source) throws IOException {
+        Integer id = sourceIds.get(source);
+        if (id != null) {
+            return id;
+        }
+        int next = sourceIds.size();
+        sourcesOut.writeUTF(source);
+        sourcesOut.flush();
+        sourceIds.put(source, next);
+        String[] names = Arrays.copyOf(sourceNames, next + 1);
+        names[next] = source;
+        sourceNames = names;
+        return next;
+    }
+
+    private Segment roll(long now) throws IOException {
+        Segment s = new Segment(dir.resolve(String.format("events-%016d.seg", nextSegment++)), segmentEvents, true);
+        segments.add(s);
+        enforceRetention(now);
+        return s;
+    }
+
+    // Drops the oldest full segments beyond maxSegments or older than maxAge (0 disables a limit).
+    public synchronized void enforceRetention(long now) throws IOException {
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            boolean tooMany = maxSegments > 0 && segments.size() > maxSegments;
+            boolean tooOld = maxAgeMillis > 0 && oldest.count > 0 && oldest.maxTs < now - maxAgeMillis;
+            if (!tooMany && !tooOld) {
+                break;
+            }
+            segments.remove(0);
+            oldest.dropped = true;
+            oldest.release();
+        }
+    }
+
+    // Events with from <= ts <= to, optionally restricted to one source and/or type, oldest first,
+    // at most limit of them.
+    public List<FlowEvent> query(long from, long to, String source, EventType type, int limit) {
+        List<FlowEvent> result = new ArrayList<>();
+        int sourceId = -1;
+        if (source != null) {
+            Integer id;
+            synchronized (this) {
+                id = sourceIds.get(source);
+            }
+            if (id == null) {
+                return result;
+            }
+            sourceId = id;
+        }
+        for (Segment s : segments) {
+            if (!s.acquire()) {
+                continue;
+            }
+            try {
+                if (!scan(s, from, to, sourceId, type, limit, result)) {
+                    break;
+                }
+            } finally {
+                s.release();
+            }
+        }
+        return result;
+    }
+
+    // Adds the segment's matching rows; false once limit is reached.
+    private boolean scan(Segment s, long from, long to, int sourceId, EventType type, int limit, List<FlowEvent> result) {
+        String[] names = sourceNames;
+        int n = s.count;
+        if (n == 0 || s.maxTs < from || s.minTs > to) {
+            return true;
+        }
+        if (sourceId < 0) {
+            int end = to == Long.MAX_VALUE ? n : s.lowerBound(n, to + 1);
+            for (int i = s.lowerBound(n, from); i < end; i++) {
+                if (!add(s, i, type, names, result, limit)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // Count first: rows appended after it may not be in the array snapshot yet.
+        int rowCount = s.rowCount(sourceId);
+        int[] rows = s.rows(sourceId);
+        int lo = 0;
+        int hi = rowCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (s.ts.get(rows[mid]) < from) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < rowCount && rows[k] < n; k++) {
+            int i = rows[k];
+            if (s.ts.get(i) > to) {
+                break;
+            }
+            if (!add(s, i, type, names, result, limit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean add(Segment s, int i, EventType type, String[] names, List<FlowEvent> result, int limit) {
+        if (type != null && s.types.get(i) != type.ordinal()) {
+            return true;
+        }
+        double v = s.values.get(i);
+        int src = s.sources.get(i);
+        result.add(new FlowEvent(s.ts.get(i), TYPES[s.types.get(i)],
+                src < names.length ? names[src] : null, Double.isNaN(v) ? null : v));
+        return result.size() < limit;
+    }
+
+    public long size() {
+        long n = 0;
+        for (Segment s : segments) {
+            n += s.count;
+        }
+        return n;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Lets the writer thread append what is still pending, then unmaps every segment.
+    @Override
+    public void close() throws IOException {
+        Thread w;
+        synchronized (pending) {
+            closing = true;
+            pending.notifyAll();
+            w = writer;
+        }
+        if (w != null) {
+            try {
+                w.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            closeSegments();
+        }
+    }
+
+    private void closeSegments() throws IOException {
+        List<Segment> open = new ArrayList<>(segments);
+        segments.clear();
+        for (Segment s : open) {
+            s.release();
+        }
+        sourcesOut.close();
+    }
+}
@@ -0,0 +1,24 @@
+package app;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class EventStoreConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("cascade.events.dir")
+    public EventStore eventStore(
+            @Value("${cascade.events.dir}") String dir,
+            @Value("${cascade.events.segment-events:1048576}") int segmentEvents,
+            @Value("${cascade.events.retention.max-segments:256}") int maxSegments,
+            @Value("${cascade.events.retention.max-age-hours:168}") long maxAgeHours) throws IOException {
+        return new EventStore(Path.of(dir), segmentEvents, maxSegments, TimeUnit.HOURS.toMillis(maxAgeHours));
+    }
+}
@@ -0,0 +1,229 @@
+package app;
+
+import configs.Graph;
+import configs.Node;
+import graph.GraphProfiler;
+
+import java.util.*;
+
+// Keeps the JSON view of the last few topology versions so /api/graph can answer with 304s,
+// deltas between versions, pages and neighborhoods without rebuilding per request.
+final class GraphSnapshots {
+    private static final int HISTORY = 16;
+    // Topology versions restart at 0 with the JVM, so ETags and since= tokens carry the boot they
+    // belong to; a browser that kept a tag across a restart then gets the new graph, not a 304.
+    static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    // inOffsets/inSources: reverse CSR of the graph (predecessors of u are
+    // inSources[inOffsets[u] .. inOffsets[u + 1])), built once per snapshot for neighborhood queries.
+    record Snapshot(Graph graph, List<Map<String, String>> nodes, List<Map<String, String>> edges,
+                    int[] inOffsets, int[] inSources) {
+        long version() {
+            return graph.getVersion();
+        }
+
+        String etag() {
+            return "\"" + EPOCH + "-" + version() + "\"";
+        }
+    }
+
+    private final LinkedHashMap<Long, Snapshot> history = new LinkedHashMap<>();
+
+    synchronized Snapshot current() {
+        Graph g = Graph.current();
+        Snapshot s = history.get(g.getVersion());
+        if (s == null) {
+            s = snapshot(g);
+            history.put(g.getVersion(), s);
+            Iterator<Long> it = history.keySet().iterator();
+            while (history.size() > HISTORY) {
+                it.next();
+                it.remove();
+            }
+        }
+        return s;
+    }
+
+    // Snapshot of an earlier version of this boot's topology, or null if unknown or evicted.
+    synchronized Snapshot at(String epoch, long version) {
+        return EPOCH.equals(epoch) ? history.get(version) : null;
+    }
+
+    private static Snapshot snapshot(Graph g) {
+        int[] offsets = g.getEdgeOffsets();
+        int[] targets = g.getEdgeTargets();
+        int n = g.size();
+        int[] inOffsets = new int[n + 1];
+        for (int t : targets) {
+            inOffsets[t + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        int[] sources = new int[targets.length];
+        int[] fill = Arrays.copyOf(inOffsets, n);
+        for (int u = 0; u < n; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                sources[fill[targets[e]]++] = u;
+            }
+        }
+        return new Snapshot(g, nodeViews(g), edgeViews(g), inOffsets, sources);
+    }
+
+    static Map<String, Object> delta(Snapshot from, Snapshot to) {
+        Set<String> oldNodes = new HashSet<>();
+        for (Map<String, String> n : from.nodes()) {
+            oldNodes.add(n.get("id"));
+        }
+        Set<String> newNodes = new HashSet<>();
+        List<Map<String, String>> addedNodes = new ArrayList<>();
+        for (Map<String, String> n : to.nodes()) {
+            newNodes.add(n.get("id"));
+            if (!oldNodes.contains(n.get("id"))) {
+                addedNodes.add(n);
+            }
+        }
+        List<String> removedNodes = new ArrayList<>();
+        for (String id : oldNodes) {
+            if (!newNodes.contains(id)) {
+                removedNodes.add(id);
+            }
+        }
+
+        Set<String> oldEdges = new HashSet<>();
+        for (Map<String, String> e : from.edges()) {
+            oldEdges.add(edgeKey(e));
+        }
+        Set<String> newEdges = new HashSet<>();
+        List<Map<String, String>> addedEdges = new ArrayList<>();
+        for (Map<String, String> e : to.edges()) {
+            newEdges.add(edgeKey(e));
+            if (!oldEdges.contains(edgeKey(e))) {
+                addedEdges.add(e);
+            }
+        }
+        List<Map<String, String>> removedEdges = new ArrayList<>();
+        for (Map<String, String> e : from.edges()) {
+            if (!newEdges.contains(edgeKey(e))) {
+                removedEdges.add(e);
+            }
+        }
+
+        return Map.of(
+                "version", to.version(),
+                "epoch", EPOCH,
+                "since", from.version(),
+                "delta", true,
+                "nodes", addedNodes,
+                "edges", addedEdges,
+                "removedNodes", removedNodes,
+                "removedEdges", removedEdges);
+    }
+
+    static Map<String, Object> page(Snapshot s, int offset, int limit) {
+        Graph g = s.graph();
+        int from = Math.min(Math.max(offset, 0), g.size());
+        int to = Math.min(from + limit, g.size());
+        List<Node> slice = g.subList(from, to);
+        return Map.of(
+                "version", s.version(),
+                "total", g.size(),
+                "offset", from,
+                "nodes", nodeViews(slice),
+                "edges", edgeViews(slice));
+    }
+
+    // Nodes within depth hops of center, following edges in both directions.
+    static Map<String, Object> neighborhood(Snapshot s, String center, int depth) {
+        Graph g = s.graph();
+        Node start = g.getNode(center);
+        if (start == null) {
+            return null;
+        }
+        int[] offsets = g.getEdgeOffsets();
+        int[] targets = g.getEdgeTargets();
+        int[] inOffsets = s.inOffsets();
+        int[] sources = s.inSources();
+        int n = g.size();
+        boolean[] seen = new boolean[n];
+        List<Node> included = new ArrayList<>();
+        List<Integer> frontier = List.of(start.getId());
+        seen[start.getId()] = true;
+        included.add(start);
+        for (int d = 0; d < depth && !frontier.isEmpty(); d++) {
+            List<Integer> next = new ArrayList<>();
+            for (int u : frontier) {
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    visit(g, targets[e], seen, next, included);
+                }
+                for (int e = inOffsets[u]; e < inOffsets[u + 1]; e++) {
+                    visit(g, sources[e], seen, next, included);
+                }
+            }
+            frontier = next;
+        }
+
+        List<Map<String, String>> edges = new ArrayList<>();
+        for (Node node : included) {
+            for (Node neighbor : node.getEdges()) {
+                if (seen[neighbor.getId()]) {
+                    edges.add(Map.of("from", node.getName(), "to", neighbor.getName()));
+                }
+            }
+        }
+        return Map.of(
+                "version", s.version(),
+                "total", g.size(),
+                "nodes", nodeViews(included),
+                "edges", edges);
+    }
+
+    private static void visit(Graph g, int id, boolean[] seen, List<Integer> next, List<Node> included) {
+        if (!seen[id]) {
+            seen[id] = true;
+            next.add(id);
+            included.add(g.get(id));
+        }
+    }
+
+    private static List<Map<String, String>> nodeViews(List<Node> nodes) {
+        List<Map<String, String>> views = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            views.add(Map.of("id", node.getName(), "kind", node.getKind(), "label", node.getLabel()));
+        }
+        return views;
+    }
+
+    private static List<Map<String, String>> edgeViews(List<Node> nodes) {
+        List<Map<String, String>> views = new ArrayList<>();
+        for (Node node : nodes) {
+            for (Node neighbor : node.getEdges()) {
+                views.add(Map.of("from", node.getName(), "to", neighbor.getName()));
+            }
+        }
+        return views;
+    }
+
+    // Edges with "rate" (messages/s over the profile) and "weight" (rate relative to the busiest edge).
+    static List<Map<String, Object>> withRates(Snapshot s, GraphProfiler profile) {
+        Map<List<String>, Long> counts = profile == null ? Map.of() : profile.getEdgeCounts();
+        double seconds = profile == null ? 1 : Math.max(profile.getElapsedSeconds(), 1e-9);
+        long max = 1;
+        for (long n : counts.values()) {
+            max = Math.max(max, n);
+        }
+        List<Map<String, Object>> views = new ArrayList<>(s.edges().size());
+        for (Map<String, String> e : s.edges()) {
+            long n = counts.getOrDefault(List.of(e.get("from"), e.get("to")), 0L);
+            Map<String, Object> view = new LinkedHashMap<>(e);
+            view.put("rate", n / seconds);
+            view.put("weight", n / (double) max);
+            views.add(view);
+        }
+        return views;
+    }
+
+    private static String edgeKey(Map<String, String> edge) {
+        return edge.get("from") + "\u0000" + edge.get("to");
+    }
+}
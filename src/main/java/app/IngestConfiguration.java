@@ -0,0 +1,20 @@
+package app;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+
+@Configuration
+public class IngestConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty("cascade.ingest.tcp.port")
+    public BinaryIngestServer binaryIngestServer(
+            @Value("${cascade.ingest.tcp.host:127.0.0.1}") String host,
+            @Value("${cascade.ingest.tcp.port}") int port) {
+        return new BinaryIngestServer(new InetSocketAddress(host, port));
+    }
+}
@@ -0,0 +1,242 @@
+package app;
+
+import configs.Partitioning;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Connects one partition of a graph to its peers. Every topic with subscribers in other partitions
+ * gets an observer that forwards locally produced messages over one BinaryIngestClient per peer;
+ * messages from peers arrive through a BinaryIngestServer and are published locally without being
+ * forwarded again.
+ *
+ * Each peer link is a single ordered TCP stream and a topic's messages are written to it in delivery
+ * order, so every subscriber sees a topic's values in the order its publisher produced them.
+ * Observers run on agent threads, so they only queue messages; each link has its own writer thread
+ * doing the socket writes. A full queue (a slow peer) makes the observer wait, pushing back on the
+ * local graph. Links are flushed when their buffer fills and every flush interval.
+ */
+public final class PartitionBridge implements AutoCloseable {
+    private static final ThreadLocal<Topic> INBOUND = new ThreadLocal<>();
+    private static final int FRAME_BYTES = 64 * 1024;
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private final int partition;
+    private final List<InetSocketAddress> peers;
+    private final Partitioning plan;
+    private final long flushNanos;
+    private final Link[] links;
+    private final Map<Topic, Consumer<Message>> observers = new HashMap<>();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private BinaryIngestServer server;
+    private volatile boolean running;
+
+    private record Outbound(Topic topic, Message msg) {
+    }
+
+    // Written only by its writer thread.
+    private static final class Link {
+        private final BinaryIngestClient client;
+        private final BlockingQueue<Outbound> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private boolean[] defined = new boolean[64];
+        private Thread writer;
+
+        private Link(BinaryIngestClient client) {
+            this.client = client;
+        }
+
+        void send(Topic topic, Message msg) throws IOException {
+            int id = topic.getId();
+            if (id >= defined.length) {
+                defined = Arrays.copyOf(defined, Math.max(id + 1, defined.length * 2));
+            }
+            if (!defined[id]) {
+                client.define(id, topic.name);
+                defined[id] = true;
+            }
+            if (Double.isNaN(msg.asDouble)) {
+                client.publish(id, msg.data);
+            } else {
+                client.publish(id, msg.asDouble);
+            }
+        }
+
+    }
+
+    public PartitionBridge(int partition, List<InetSocketAddress> peers, Partitioning plan, long flushMicros) {
+        if (peers.size() != plan.getParts()) {
+            throw new IllegalArgumentException("Expected " + plan.getParts() + " peer addresses but got " + peers.size());
+        }
+        this.partition = partition;
+        this.peers = peers;
+        this.plan = plan;
+        this.flushNanos = TimeUnit.MICROSECONDS.toNanos(flushMicros);
+        this.links = new Link[peers.size()];
+    }
+
+    // Listens on this partition's address, then connects to every peer that reads one of our topics,
+    // retrying until the peers are up or the timeout expires.
+    public synchronized void start(long connectTimeout, TimeUnit unit) throws IOException, InterruptedException {
+        if (running) {
+            return;
+        }
+        server = new BinaryIngestServer(peers.get(partition), this::receive);
+        server.start();
+
+        Map<Topic, int[]> routes = new HashMap<>();
+        for (Topic topic : TopicManagerSingleton.get().getTopics()) {
+            int[] remote = Arrays.stream(plan.subscriberPartitions(topic.name)).filter(p -> p != partition).toArray();
+            if (remote.length > 0) {
+                routes.put(topic, remote);
+            }
+        }
+        long deadline = System.nanoTime() + unit.toNanos(connectTimeout);
+        for (int[] remote : routes.values()) {
+            for (int p : remote) {
+                if (links[p] == null) {
+                    links[p] = new Link(connect(peers.get(p), deadline));
+                }
+            }
+        }
+        running = true;
+        for (int p = 0; p < links.length; p++) {
+            Link link = links[p];
+            if (link != null) {
+                link.writer = new Thread(() -> writeLoop(link), "PartitionBridge-" + partition + "->" + p);
+                link.writer.setDaemon(true);
+                link.writer.start();
+            }
+        }
+        routes.forEach((topic, remote) -> {
+            Consumer<Message> observer = msg -> forward(topic, remote, msg);
+            topic.addObserver(observer);
+            observers.put(topic, observer);
+        });
+    }
+
+    private static BinaryIngestClient connect(InetSocketAddress address, long deadline)
+            throws IOException, InterruptedException {
+        while (true) {
+            try {
+                return new BinaryIngestClient(address, FRAME_BYTES);
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Partition peer " + address + " not reachable", e);
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private void forward(Topic topic, int[] remote, Message msg) {
+        if (INBOUND.get() == topic) {
+            return;
+        }
+        for (int p : remote) {
+            Link link = links[p];
+            if (link == null) {
+                continue;
+            }
+            try {
+                link.queue.put(new Outbound(topic, msg));
+            } catch (InterruptedException e) {
+                errors.incrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receive(Topic topic, Message msg) {
+        INBOUND.set(topic);
+        try {
+            topic.publish(msg);
+        } finally {
+            INBOUND.remove();
+        }
+    }
+
+    // Writes queued messages to the link and flushes it every flush interval. On close, what is
+    // already queued is still written. The writer is never interrupted: that would close its channel
+    // mid-write. It notices close() within one flush interval.
+    private void writeLoop(Link link) {
+        long flushAt = System.nanoTime() + flushNanos;
+        while (running || !link.queue.isEmpty()) {
+            try {
+                Outbound out = link.queue.poll(Math.max(0, flushAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (out != null) {
+                    link.send(out.topic(), out.msg());
+                    forwarded.incrementAndGet();
+                }
+                if (System.nanoTime() - flushAt >= 0) {
+                    link.client.flush();
+                    flushAt = System.nanoTime() + flushNanos;
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        try {
+            link.client.flush();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    public long getReceived() {
+        return server == null ? 0 : server.getPublished();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        observers.forEach(Topic::removeObserver);
+        observers.clear();
+        for (int p = 0; p < links.length; p++) {
+            Link link = links[p];
+            if (link == null) {
+                continue;
+            }
+            if (link.writer != null) {
+                try {
+                    link.writer.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            try {
+                link.client.close();
+            } catch (IOException ignored) {
+            }
+            links[p] = null;
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package app;
+
+import configs.GenericConfig;
+import configs.Graph;
+import configs.Partitioning;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one partition of a GenericConfig in this JVM. Every process loads the same config, derives
+ * the same Partitioning from the full topology, keeps only its own agents and bridges cut topics to
+ * the other partitions through a PartitionBridge.
+ *
+ * Usage: PartitionNode <config> <partition> <host:port,host:port,...>
+ * Prints "READY <agents> <cutTopics>" and then reads commands from stdin:
+ * publish <topic> <value> | values [topic ...] | trace <topic> | traced <topic> | quit
+ * trace starts recording every value published to a topic, traced prints those recorded so far.
+ */
+public final class PartitionNode implements AutoCloseable {
+    private static final long FLUSH_MICROS = 200;
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private final String confFile;
+    private final int partition;
+    private final List<InetSocketAddress> peers;
+    private GenericConfig config;
+    private Partitioning plan;
+    private PartitionBridge bridge;
+
+    public PartitionNode(String confFile, int partition, List<InetSocketAddress> peers) {
+        if (partition < 0 || partition >= peers.size()) {
+            throw new IllegalArgumentException("Partition " + partition + " outside 0.." + (peers.size() - 1));
+        }
+        this.confFile = confFile;
+        this.partition = partition;
+        this.peers = peers;
+    }
+
+    public void start() throws IOException, InterruptedException {
+        TopicManagerSingleton.get().clear();
+        config = new GenericConfig();
+        config.setConfFile(confFile);
+        config.create();
+        Graph full = Graph.current();
+        if (full.hasCycles()) {
+            config.close();
+            throw new IllegalArgumentException("Config contains a cycle - cyclic dependencies are not allowed");
+        }
+        plan = Partitioning.of(full, peers.size());
+        config.retainPartition(plan, partition);
+        Graph local = Graph.current();
+        config.fuseChains(local);
+        config.schedule(local);
+        bridge = new PartitionBridge(partition, peers, plan, FLUSH_MICROS);
+        bridge.start(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public GenericConfig getConfig() {
+        return config;
+    }
+
+    public Partitioning getPlan() {
+        return plan;
+    }
+
+    public PartitionBridge getBridge() {
+        return bridge;
+    }
+
+    @Override
+    public void close() {
+        if (bridge != null) {
+            bridge.close();
+        }
+        if (config != null) {
+            config.close();
+        }
+        TopicManagerSingleton.get().clear();
+    }
+
+    public static List<InetSocketAddress> parsePeers(String spec) {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : spec.split(",")) {
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Expected host:port but got " + peer);
+            }
+            peers.add(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+        }
+        return peers;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: PartitionNode <config> <partition> <host:port,host:port,...>");
+            System.exit(2);
+        }
+        try (PartitionNode node = new PartitionNode(args[0], Integer.parseInt(args[1]), parsePeers(args[2]))) {
+            node.start();
+            // The values command reads the topics' last-value caches.
+            TopicManagerSingleton.get().setLastValuesEnabled(true);
+            System.out.println("READY " + node.getConfig().getRunningAgents().size() + " " + node.getPlan().getCutTopics());
+            Map<String, List<Double>> traces = new HashMap<>();
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] cmd = line.trim().split("\\s+");
+                switch (cmd[0]) {
+                    case "publish" -> {
+                        Topic topic = TopicManagerSingleton.get().findTopic(cmd[1]);
+                        if (topic != null) {
+                            topic.publish(new Message(Double.parseDouble(cmd[2])));
+                        }
+                    }
+                    case "values" -> System.out.println(toJson(cmd.length > 1
+                            ? TopicManagerSingleton.get().getLastValues(Arrays.asList(cmd).subList(1, cmd.length))
+                            : TopicManagerSingleton.get().getLastValues()));
+                    case "trace" -> {
+                        List<Double> trace = new ArrayList<>();
+                        TopicManagerSingleton.get().getTopic(cmd[1]).addObserver(m -> {
+                            synchronized (trace) {
+                                trace.add(m.asDouble);
+                            }
+                        });
+                        traces.put(cmd[1], trace);
+                        System.out.println("TRACING " + cmd[1]);
+                    }
+                    case "traced" -> {
+                        List<Double> trace = traces.getOrDefault(cmd[1], List.of());
+                        StringBuilder sb = new StringBuilder("[");
+                        synchronized (trace) {
+                            for (double v : trace) {
+                                sb.append(sb.length() > 1 ? "," : "").append(json(v));
+                            }
+                        }
+                        System.out.println(sb.append(']'));
+                    }
+                    case "quit" -> {
+                        return;
+                    }
+                    default -> System.out.println("ERROR unknown command " + cmd[0]);
+                }
+                System.out.flush();
+            }
+        }
+    }
+
+    private static String toJson(Map<String, Double> values) {
+        StringBuilder sb = new StringBuilder("{");
+        values.forEach((name, v) -> {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append('"').append(name.replace("\"", "\\\"")).append("\":")
+                    .append(json(v));
+        });
+        return sb.append('}').toString();
+    }
+
+    // NaN and infinities have no JSON form.
+    private static String json(double v) {
+        return Double.isFinite(v) ? Double.toString(v) : "null";
+    }
+}
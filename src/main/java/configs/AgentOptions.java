@@ -0,0 +1,27 @@
+package configs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Validates the options of an agent class line or a directive, so a typo fails the load instead of
+// being ignored.
+final class AgentOptions {
+    private AgentOptions() {
+    }
+
+    static void check(Map<String, String> options, String owner, String... known) {
+        List<String> allowed = Arrays.asList(known);
+        List<String> unknown = new ArrayList<>();
+        for (String key : options.keySet()) {
+            if (!allowed.contains(key)) {
+                unknown.add(key);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown option(s) for " + owner + ": " + String.join(", ", unknown)
+                    + (known.length == 0 ? "" : " (expected " + String.join(", ", known) + ")"));
+        }
+    }
+}
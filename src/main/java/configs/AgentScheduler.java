@@ -0,0 +1,126 @@
+package configs;
+
+import graph.AgentWorker;
+import graph.ParallelAgent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Places ParallelAgents onto a fixed set of shared workers using the validated topology:
+// - priority = longest remaining agent path to a sink, so critical-path agents run first
+// - a producer and the sole consumer of its topic are co-located on one worker (no cross-thread handoff)
+// - clusters are spread over workers largest-first onto the least loaded one
+// Pinned and inline agents are left alone; pinned ones keep their dedicated thread.
+public final class AgentScheduler {
+    private AgentScheduler() {
+    }
+
+    public static List<AgentWorker> place(Graph graph, List<ParallelAgent> agents, int workerCount,
+                                          Set<String> pinned) {
+        int n = graph.size();
+        int[] offsets = graph.getEdgeOffsets();
+        int[] targets = graph.getEdgeTargets();
+        int[] priority = longestRemainingPath(graph, offsets, targets);
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        // Topic nodes with a single subscriber glue their publishers to that subscriber.
+        for (int u = 0; u < n; u++) {
+            if (!"AGENT".equals(graph.get(u).getKind())) {
+                continue;
+            }
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int topic = targets[e];
+                if (offsets[topic + 1] - offsets[topic] == 1) {
+                    union(parent, u, targets[offsets[topic]]);
+                }
+            }
+        }
+
+        Map<Integer, List<ParallelAgent>> clusters = new HashMap<>();
+        for (ParallelAgent pa : agents) {
+            Node node = graph.getNode(pa.getAgentId());
+            if (node == null || pa.isInline() || pinned.contains(pa.getAgentId())) {
+                continue;
+            }
+            clusters.computeIfAbsent(find(parent, node.getId()), k -> new ArrayList<>()).add(pa);
+        }
+
+        List<AgentWorker> workers = new ArrayList<>();
+        if (clusters.isEmpty() || workerCount <= 0) {
+            return workers;
+        }
+        int count = Math.min(workerCount, clusters.size());
+        int[] load = new int[count];
+        for (int i = 0; i < count; i++) {
+            workers.add(new AgentWorker("AgentWorker-" + i));
+        }
+        List<List<ParallelAgent>> ordered = new ArrayList<>(clusters.values());
+        ordered.sort(Comparator.comparingInt((List<ParallelAgent> c) -> c.size()).reversed());
+        for (List<ParallelAgent> cluster : ordered) {
+            int w = 0;
+            for (int i = 1; i < count; i++) {
+                if (load[i] < load[w]) {
+                    w = i;
+                }
+            }
+            load[w] += cluster.size();
+            for (ParallelAgent pa : cluster) {
+                pa.runOn(workers.get(w), priority[graph.getNode(pa.getAgentId()).getId()]);
+            }
+        }
+        return workers;
+    }
+
+    // Number of agents on the longest path from each node to a sink, in reverse topological order.
+    private static int[] longestRemainingPath(Graph graph, int[] offsets, int[] targets) {
+        int n = graph.size();
+        int[] inDegree = new int[n];
+        for (int t : targets) {
+            inDegree[t]++;
+        }
+        int[] order = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int u = order[head++];
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                if (--inDegree[targets[e]] == 0) {
+                    order[tail++] = targets[e];
+                }
+            }
+        }
+        int[] rank = new int[n];
+        for (int i = tail - 1; i >= 0; i--) {
+            int u = order[i];
+            int best = 0;
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                best = Math.max(best, rank[targets[e]]);
+            }
+            rank[u] = best + ("AGENT".equals(graph.get(u).getKind()) ? 1 : 0);
+        }
+        return rank;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+}
@@ -0,0 +1,259 @@
+package configs;
+
+import graph.Agent;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Reduces N inputs into one output in a single step, e.g.
+//   configs.AggregateAgent op=sum join=latest
+//   A,B,C,D
+//   S
+// op: sum | product | min | max | mean | count
+// join: latest - emit on every update once each input has a value (like PlusAgent)
+//       any    - emit on every update, over the inputs that have a value so far
+//       all    - emit once every input has updated since the previous emission
+//       zip    - combine the k-th value of every input (aligned by sequence); up to zip-depth
+//                values per input are buffered, the oldest dropped beyond that
+// Input state lives in a double array and bitsets (one bit per input).
+public class AggregateAgent implements Agent {
+    private enum Op {
+        SUM, PRODUCT, MIN, MAX, MEAN, COUNT
+    }
+
+    private enum Join {
+        LATEST, ANY, ALL, ZIP
+    }
+
+    private final String[] subs;
+    private final String[] pubs;
+    private final String agentId;
+    private final Op op;
+    private final Join join;
+    private final Map<String, int[]> index = new HashMap<>();
+    private final double[] values;
+    private final long[] has;
+    private final long[] updated;
+    private int present;
+    private int fresh;
+    // zip: one ring of depth values per input.
+    private final int depth;
+    private final double[] ring;
+    private final int[] head;
+    private final int[] size;
+    private int nonEmpty;
+    private long dropped;
+
+    public AggregateAgent(String[] subs, String[] pubs) {
+        this(subs, pubs, Map.of());
+    }
+
+    public AggregateAgent(String[] subs, String[] pubs, Map<String, String> options) {
+        if (subs.length == 0 || pubs.length == 0) {
+            throw new IllegalArgumentException("AggregateAgent needs at least one input and an output");
+        }
+        this.subs = subs;
+        this.pubs = pubs;
+        AgentOptions.check(options, "AggregateAgent", "op", "join", "zip-depth");
+        this.op = parse(Op.class, options.getOrDefault("op", "sum"), "op");
+        this.join = parse(Join.class, options.getOrDefault("join", "latest"), "join");
+        this.agentId = "AggregateAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
+        int n = subs.length;
+        this.values = new double[n];
+        this.has = new long[(n + 63) >>> 6];
+        this.updated = new long[has.length];
+        for (int i = 0; i < n; i++) {
+            int[] prev = index.get(subs[i]);
+            int[] slots = prev == null ? new int[1] : Arrays.copyOf(prev, prev.length + 1);
+            slots[slots.length - 1] = i;
+            index.put(subs[i], slots);
+        }
+        if (join == Join.ZIP) {
+            try {
+                this.depth = Integer.parseInt(options.getOrDefault("zip-depth", "1024"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("zip-depth must be a number");
+            }
+            if (depth <= 0) {
+                throw new IllegalArgumentException("zip-depth must be > 0");
+            }
+            this.ring = new double[n * depth];
+            this.head = new int[n];
+            this.size = new int[n];
+        } else {
+            this.depth = 0;
+            this.ring = null;
+            this.head = null;
+            this.size = null;
+        }
+        for (String sub : index.keySet()) {
+            TopicManagerSingleton.get().getTopic(sub).subscribe(this);
+        }
+        TopicManagerSingleton.get().getTopic(pubs[0]).addPublisher(this);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String option) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + option + ": " + value);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "AggregateAgent";
+    }
+
+    @Override
+    public String getAgentId() {
+        return agentId;
+    }
+
+    // zip values dropped because an input ran more than zip-depth ahead of the slowest one.
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(values, 0);
+        Arrays.fill(has, 0);
+        Arrays.fill(updated, 0);
+        present = 0;
+        fresh = 0;
+        if (size != null) {
+            Arrays.fill(size, 0);
+            Arrays.fill(head, 0);
+            nonEmpty = 0;
+        }
+    }
+
+    @Override
+    public void callback(String topic, Message msg) {
+        int[] slots = index.get(topic);
+        if (slots == null || Double.isNaN(msg.asDouble)) {
+            return;
+        }
+        double v = msg.asDouble;
+        boolean emit = false;
+        for (int i : slots) {
+            emit |= join == Join.ZIP ? offer(i, v) : update(i, v);
+        }
+        if (emit) {
+            double r = join == Join.ZIP ? reduceZip() : reduce(join == Join.ANY ? has : null);
+            if (join == Join.ALL) {
+                Arrays.fill(updated, 0);
+                fresh = 0;
+            }
+            TopicManagerSingleton.get().getTopic(pubs[0]).publish(new Message(r), getAgentId());
+        }
+    }
+
+    // Returns whether this update completes the join.
+    private boolean update(int i, double v) {
+        values[i] = v;
+        int w = i >>> 6;
+        long bit = 1L << i;
+        if ((has[w] & bit) == 0) {
+            has[w] |= bit;
+            present++;
+        }
+        if ((updated[w] & bit) == 0) {
+            updated[w] |= bit;
+            fresh++;
+        }
+        return switch (join) {
+            case ANY -> true;
+            case LATEST -> present == subs.length;
+            default -> fresh == subs.length;
+        };
+    }
+
+    private boolean offer(int i, double v) {
+        if (size[i] == depth) {
+            head[i] = (head[i] + 1) % depth;
+            size[i]--;
+            dropped++;
+        } else if (size[i] == 0) {
+            nonEmpty++;
+        }
+        ring[i * depth + (head[i] + size[i]) % depth] = v;
+        size[i]++;
+        return nonEmpty == subs.length;
+    }
+
+    private double reduceZip() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ring[i * depth + head[i]];
+            head[i] = (head[i] + 1) % depth;
+            if (--size[i] == 0) {
+                nonEmpty--;
+            }
+        }
+        return reduce(null);
+    }
+
+    // Over all inputs, or only those whose bit is set in mask.
+    private double reduce(long[] mask) {
+        double acc = switch (op) {
+            case PRODUCT -> 1;
+            case MIN -> Double.POSITIVE_INFINITY;
+            case MAX -> Double.NEGATIVE_INFINITY;
+            default -> 0;
+        };
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (mask != null && (mask[i >>> 6] & (1L << i)) == 0) {
+                continue;
+            }
+            double v = values[i];
+            switch (op) {
+                case SUM, MEAN -> acc += v;
+                case PRODUCT -> acc *= v;
+                case MIN -> acc = Math.min(acc, v);
+                case MAX -> acc = Math.max(acc, v);
+                case COUNT -> {
+                }
+            }
+            count++;
+        }
+        return switch (op) {
+            case MEAN -> acc / count;
+            case COUNT -> count;
+            default -> acc;
+        };
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void onClearInput(String topic) {
+        int[] slots = index.get(topic);
+        if (slots == null) {
+            return;
+        }
+        for (int i : slots) {
+            int w = i >>> 6;
+            long bit = 1L << i;
+            if ((has[w] & bit) != 0) {
+                has[w] &= ~bit;
+                present--;
+            }
+            if ((updated[w] & bit) != 0) {
+                updated[w] &= ~bit;
+                fresh--;
+            }
+            if (size != null && size[i] > 0) {
+                size[i] = 0;
+                head[i] = 0;
+                nonEmpty--;
+            }
+        }
+    }
+}
@@ -7,10 +7,12 @@ import graph.TopicManagerSingleton;
 public class DecAgent implements Agent {
     private final String[] subs;
     private final String[] pubs;
+    private final String agentId;
 
     public DecAgent(String[] subs, String[] pubs) {
         this.subs = subs;
         this.pubs = pubs;
+        this.agentId = "DecAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
         TopicManagerSingleton.get().getTopic(subs[0]).subscribe(this);
         TopicManagerSingleton.get().getTopic(pubs[0]).addPublisher(this);
     }
@@ -22,7 +24,7 @@ public class DecAgent implements Agent {
 
     @Override
     public String getAgentId() {
-        return "DecAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
+        return agentId;
     }
 
     @Override
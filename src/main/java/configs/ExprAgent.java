@@ -0,0 +1,126 @@
+package configs;
+
+import graph.MemoCache;
+import graph.Message;
+import graph.PureAgent;
+import graph.TopicManagerSingleton;
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+
+public class ExprAgent implements PureAgent {
+    private final String[] subs;
+    private final String[] pubs;
+    private final String agentId;
+    private final String expr;
+    private final MethodHandle eval;
+    private final double[] values;
+    private final boolean[] has;
+    private int missing;
+    private final MemoCache memo;
+
+    public ExprAgent(String[] subs, String[] pubs, Map<String, String> options) {
+        AgentOptions.check(options, "ExprAgent", "expr", "pure", "memo");
+        this.expr = options.get("expr");
+        if (expr == null || expr.isEmpty()) {
+            throw new IllegalArgumentException("ExprAgent requires expr=<formula>");
+        }
+        this.subs = subs;
+        this.pubs = pubs;
+        this.agentId = "ExprAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
+        this.eval = ExprCompiler.compile(expr, subs);
+        this.values = new double[subs.length];
+        this.has = new boolean[subs.length];
+        this.missing = subs.length;
+        this.memo = MemoOptions.create(options, subs.length);
+        for (String sub : subs) {
+            TopicManagerSingleton.get().getTopic(sub).subscribe(this);
+        }
+        TopicManagerSingleton.get().getTopic(pubs[0]).addPublisher(this);
+    }
+
+    @Override
+    public String getName() {
+        return "ExprAgent";
+    }
+
+    @Override
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public String getExpr() {
+        return expr;
+    }
+
+    @Override
+    public MemoCache getMemo() {
+        return memo;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < subs.length; i++) {
+            values[i] = 0;
+            has[i] = false;
+        }
+        missing = subs.length;
+        if (memo != null) {
+            memo.forgetLast();
+        }
+    }
+
+    @Override
+    public void callback(String topic, Message msg) {
+        if (Double.isNaN(msg.asDouble)) {
+            return;
+        }
+        boolean matched = false;
+        for (int i = 0; i < subs.length; i++) {
+            if (subs[i].equals(topic)) {
+                values[i] = msg.asDouble;
+                if (!has[i]) {
+                    has[i] = true;
+                    missing--;
+                }
+                matched = true;
+            }
+        }
+        if (matched && missing == 0) {
+            int slot = memo == null ? -1 : memo.find(values);
+            double r;
+            if (slot >= 0) {
+                r = memo.value(slot);
+            } else {
+                try {
+                    r = (double) eval.invokeExact(values);
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Failed to evaluate " + expr, t);
+                }
+                if (memo != null) {
+                    memo.put(values, r);
+                }
+            }
+            if (memo != null && !memo.shouldPublish(r)) {
+                return;
+            }
+            TopicManagerSingleton.get().getTopic(pubs[0]).publish(new Message(r), getAgentId());
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void onClearInput(String topic) {
+        if (memo != null) {
+            memo.forgetLast();
+        }
+        for (int i = 0; i < subs.length; i++) {
+            if (subs[i].equals(topic) && has[i]) {
+                has[i] = false;
+                missing++;
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package configs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Parses an arithmetic formula over named variables once and compiles it into a
+ * single {@link MethodHandle} of type {@code (double[])double}, where element i
+ * of the argument array holds the value of {@code vars[i]}.
+ *
+ * Grammar: {@code + - * /}, unary minus, parentheses, numeric literals (with an
+ * optional exponent, e.g. {@code 1e-3}) and variable names. A name that is not a
+ * plain identifier, such as {@code sensor-1.temp}, is written in single quotes:
+ * {@code 'sensor-1.temp' * 2}. Constant sub-expressions are folded at compile time.
+ */
+public final class ExprCompiler {
+    private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+    private static final MethodType ROOT = MethodType.methodType(double.class, double[].class);
+    private static final MethodHandle ADD;
+    private static final MethodHandle SUB;
+    private static final MethodHandle MUL;
+    private static final MethodHandle DIV;
+    private static final MethodHandle NEG;
+    private static final MethodHandle ELEMENT = MethodHandles.arrayElementGetter(double[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ADD = lookup.findStatic(ExprCompiler.class, "add", BINARY);
+            SUB = lookup.findStatic(ExprCompiler.class, "sub", BINARY);
+            MUL = lookup.findStatic(ExprCompiler.class, "mul", BINARY);
+            DIV = lookup.findStatic(ExprCompiler.class, "div", BINARY);
+            NEG = lookup.findStatic(ExprCompiler.class, "neg", MethodType.methodType(double.class, double.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ExprCompiler() {
+    }
+
+    public static MethodHandle compile(String expr, String[] vars) {
+        Parser parser = new Parser(expr, vars);
+        Term root = parser.parseExpression();
+        parser.skipSpaces();
+        if (parser.pos < expr.length()) {
+            throw parser.error("unexpected '" + expr.charAt(parser.pos) + "'");
+        }
+        return root.handle();
+    }
+
+    private static double add(double a, double b) {
+        return a + b;
+    }
+
+    private static double sub(double a, double b) {
+        return a - b;
+    }
+
+    private static double mul(double a, double b) {
+        return a * b;
+    }
+
+    private static double div(double a, double b) {
+        return a / b;
+    }
+
+    private static double neg(double a) {
+        return -a;
+    }
+
+    private static final class Term {
+        private final MethodHandle handle;
+        private final double constant;
+        private final boolean isConstant;
+
+        private Term(MethodHandle handle) {
+            this.handle = handle;
+            this.constant = Double.NaN;
+            this.isConstant = false;
+        }
+
+        private Term(double constant) {
+            this.handle = null;
+            this.constant = constant;
+            this.isConstant = true;
+        }
+
+        static Term variable(int index) {
+            return new Term(MethodHandles.insertArguments(ELEMENT, 1, index));
+        }
+
+        MethodHandle handle() {
+            if (isConstant) {
+                return MethodHandles.dropArguments(MethodHandles.constant(double.class, constant), 0, double[].class);
+            }
+            return handle;
+        }
+
+        static Term binary(MethodHandle op, Term left, Term right) {
+            if (left.isConstant && right.isConstant) {
+                try {
+                    return new Term((double) op.invokeExact(left.constant, right.constant));
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }
+            MethodHandle spread = MethodHandles.filterArguments(op, 0, left.handle(), right.handle());
+            return new Term(MethodHandles.permuteArguments(spread, ROOT, 0, 0));
+        }
+
+        static Term negate(Term operand) {
+            if (operand.isConstant) {
+                return new Term(-operand.constant);
+            }
+            return new Term(MethodHandles.filterReturnValue(operand.handle, NEG));
+        }
+    }
+
+    private static final class Parser {
+        private final String src;
+        private final String[] vars;
+        private int pos;
+
+        Parser(String src, String[] vars) {
+            this.src = src;
+            this.vars = vars;
+        }
+
+        Term parseExpression() {
+            Term left = parseProduct();
+            while (true) {
+                skipSpaces();
+                if (accept('+')) {
+                    left = Term.binary(ADD, left, parseProduct());
+                } else if (accept('-')) {
+                    left = Term.binary(SUB, left, parseProduct());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        Term parseProduct() {
+            Term left = parseUnary();
+            while (true) {
+                skipSpaces();
+                if (accept('*')) {
+                    left = Term.binary(MUL, left, parseUnary());
+                } else if (accept('/')) {
+                    left = Term.binary(DIV, left, parseUnary());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        Term parseUnary() {
+            skipSpaces();
+            if (accept('-')) {
+                return Term.negate(parseUnary());
+            }
+            if (accept('+')) {
+                return parseUnary();
+            }
+            return parsePrimary();
+        }
+
+        Term parsePrimary() {
+            skipSpaces();
+            if (accept('(')) {
+                Term inner = parseExpression();
+                skipSpaces();
+                if (!accept(')')) {
+                    throw error("expected ')'");
+                }
+                return inner;
+            }
+            int start = pos;
+            if (pos < src.length() && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) {
+                while (pos < src.length() && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) {
+                    pos++;
+                }
+                skipExponent();
+                try {
+                    return new Term(Double.parseDouble(src.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    throw error("bad number '" + src.substring(start, pos) + "'");
+                }
+            }
+            String name;
+            if (accept('\'')) {
+                int end = src.indexOf('\'', pos);
+                if (end < 0) {
+                    throw error("unterminated quoted name");
+                }
+                name = src.substring(pos, end);
+                pos = end + 1;
+            } else {
+                while (pos < src.length() && (Character.isLetterOrDigit(src.charAt(pos)) || src.charAt(pos) == '_')) {
+                    pos++;
+                }
+                if (start == pos) {
+                    throw error(pos < src.length() ? "unexpected '" + src.charAt(pos) + "'" : "unexpected end");
+                }
+                name = src.substring(start, pos);
+            }
+            for (int i = 0; i < vars.length; i++) {
+                if (vars[i].equals(name)) {
+                    return Term.variable(i);
+                }
+            }
+            throw error("unknown topic '" + name + "'");
+        }
+
+        // e or E, an optional sign and at least one digit; anything else is left for the caller.
+        void skipExponent() {
+            int p = pos;
+            if (p < src.length() && (src.charAt(p) == 'e' || src.charAt(p) == 'E')) {
+                p++;
+                if (p < src.length() && (src.charAt(p) == '+' || src.charAt(p) == '-')) {
+                    p++;
+                }
+                if (p < src.length() && Character.isDigit(src.charAt(p))) {
+                    while (p < src.length() && Character.isDigit(src.charAt(p))) {
+                        p++;
+                    }
+                    pos = p;
+                }
+            }
+        }
+
+        boolean accept(char c) {
+            if (pos < src.length() && src.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void skipSpaces() {
+            while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error(String what) {
+            return new IllegalArgumentException("Bad expression '" + src + "' at " + pos + ": " + what);
+        }
+    }
+}
@@ -1,20 +1,84 @@
 package configs;
 
 import graph.Agent;
+import graph.AgentWorker;
+import graph.InFlightTracker;
+import graph.InputLimiter;
+import graph.LoadShedder;
 import graph.ParallelAgent;
+import graph.Topic;
+import graph.TopicFilter;
+import graph.TopicManagerSingleton;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class GenericConfig implements Config {
+    private static final Pattern OPTION = Pattern.compile("([\\w.-]+)(?:=(\"[^\"]*\"|\\S+))?");
+    // Agent classes shipped with the engine; registered for reflection in native images and
+    // resolved ahead of time by preloadAgentClasses().
+    public static final List<String> BUILTIN_AGENTS = List.of(
+            "configs.IncAgent", "configs.DecAgent", "configs.PlusAgent", "configs.MulAgent", "configs.ExprAgent",
+            "configs.AggregateAgent");
+    // Class-line options handled here rather than by the agent.
+    private static final Set<String> ENGINE_OPTIONS = Set.of("pin", "exec");
+    // Resolved agent constructors by class name, so each class is looked up reflectively once per JVM.
+    private static final Map<String, Constructor<?>> CONSTRUCTORS = new ConcurrentHashMap<>();
+
     private String confFile;
+    private static final long CLOSE_DRAIN_MILLIS = 2000;
+
     private final List<ParallelAgent> runningAgents = new ArrayList<>();
+    private final InFlightTracker inFlight = new InFlightTracker();
+    private final Set<String> pinnedAgents = new HashSet<>();
+    private final List<AgentWorker> workers = new ArrayList<>();
+    private int schedulerWorkers;
+    private boolean fuse;
+    // From @shed; the shedder itself is built by schedule(), once the agents are final.
+    private long shedTargetNanos;
+    private long shedIntervalNanos;
+    private LoadShedder shedder;
 
     public void setConfFile(String confFile) {
         this.confFile = confFile;
     }
 
+    public InFlightTracker getInFlightTracker() {
+        return inFlight;
+    }
+
+    // Null unless the config has a @shed directive and schedule() has run.
+    public LoadShedder getLoadShedder() {
+        return shedder;
+    }
+
+    // Waits until no task is queued or running in any agent. Returns false on timeout.
+    public boolean drain(long timeout, TimeUnit unit) {
+        try {
+            return inFlight.awaitQuiescence(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public List<ParallelAgent> getRunningAgents() {
+        return Collections.unmodifiableList(runningAgents);
+    }
+
     @Override
     public String getName() {
         return "Generic Config";
@@ -30,37 +94,346 @@ public class GenericConfig implements Config {
         try {
             List<String> allLines = Files.readAllLines(Paths.get(confFile));
             List<String> lines = new ArrayList<>();
+            List<String> directives = new ArrayList<>();
             for (String line : allLines) {
                 String trimmed = line.trim();
-                if (!trimmed.isEmpty()) {
+                if (trimmed.startsWith("@")) {
+                    directives.add(trimmed);
+                } else if (!trimmed.isEmpty()) {
                     lines.add(trimmed);
                 }
             }
             if (lines.size() % 3 != 0) {
                 throw new IllegalArgumentException("Config file lines must be divisible by 3");
             }
+            Set<String> agentIds = new HashSet<>();
             for (int i = 0; i < lines.size(); i += 3) {
-                String className = lines.get(i);
+                String classLine = lines.get(i);
                 String subsLine = lines.get(i + 1);
                 String pubsLine = lines.get(i + 2);
 
                 String[] subsArr = parseTopics(subsLine);
                 String[] pubsArr = parseTopics(pubsLine);
 
-                Class<?> clazz = Class.forName(className);
-                java.lang.reflect.Constructor<?> ctor = clazz.getConstructor(String[].class, String[].class);
-                Agent agent = (Agent) ctor.newInstance(subsArr, pubsArr);
+                int split = indexOfSpace(classLine);
+                String className = split < 0 ? classLine : classLine.substring(0, split);
+                Map<String, String> options = split < 0
+                        ? Collections.emptyMap()
+                        : parseOptions(classLine.substring(split + 1));
+
+                Agent agent = instantiate(className, subsArr, pubsArr, options);
+                if (!agentIds.add(agent.getAgentId())) {
+                    throw new IllegalArgumentException("Duplicate agent id: " + agent.getAgentId());
+                }
 
-                ParallelAgent wrapper = new ParallelAgent(agent, 100);
+                ParallelAgent wrapper = new ParallelAgent(agent, 100, inFlight);
+                boolean pinned = Boolean.parseBoolean(options.get("pin"));
+                if (pinned) {
+                    pinnedAgents.add(agent.getAgentId());
+                }
+                wrapper.setMode(parseMode(options.get("exec")));
+                for (String sub : subsArr) {
+                    TopicManagerSingleton.get().getTopic(sub).replaceSubscriber(agent, wrapper);
+                }
                 runningAgents.add(wrapper);
             }
+            for (String directive : directives) {
+                applyDirective(directive);
+            }
         } catch (IllegalArgumentException e) {
+            close();
             throw e;
         } catch (Exception e) {
+            close();
             throw new RuntimeException(e);
         }
     }
 
+    // With a @fuse directive, fuses linear chains P -> T -> S, where T has a single publisher and S
+    // reads only T, by running S inline on P's worker. T is still published, so listeners see every
+    // hop. Opt-in because a publish into T from outside the graph then runs S on the caller's thread
+    // (serialized with P's worker by S's lock).
+    public int fuseChains(Graph graph) {
+        if (!fuse) {
+            return 0;
+        }
+        Map<String, Integer> inDegree = new HashMap<>();
+        for (Node node : graph) {
+            for (Node next : node.getEdges()) {
+                inDegree.merge(next.getName(), 1, Integer::sum);
+            }
+        }
+        Map<String, ParallelAgent> byId = new HashMap<>();
+        for (ParallelAgent pa : runningAgents) {
+            byId.put(pa.getAgentId(), pa);
+        }
+        int fused = 0;
+        for (Node node : graph) {
+            if (!"TOPIC".equals(node.getKind()) || node.getEdges().size() != 1) {
+                continue;
+            }
+            Node sub = node.getEdges().get(0);
+            if (inDegree.getOrDefault(node.getName(), 0) != 1 || inDegree.getOrDefault(sub.getName(), 0) != 1) {
+                continue;
+            }
+            ParallelAgent target = byId.get(sub.getName());
+            Topic topic = TopicManagerSingleton.get().getTopic(node.getName());
+            if (target == null || target.isInline() || topic.pubs.size() != 1) {
+                continue;
+            }
+            target.setInline(true);
+            fused++;
+        }
+        return fused;
+    }
+
+    // Places agents on shared workers when the config has a @scheduler directive; agents marked
+    // "pin" keep a dedicated thread. Then starts the @shed controller, if any, over the agents and
+    // input topics left at that point. Call after validation, retainPartition and fuseChains.
+    // Returns agents placed.
+    public int schedule(Graph graph) {
+        int placed = 0;
+        if (schedulerWorkers > 0 && workers.isEmpty()) {
+            workers.addAll(AgentScheduler.place(graph, runningAgents, schedulerWorkers, pinnedAgents));
+            for (ParallelAgent pa : runningAgents) {
+                if (pa.getSharedWorker() != null) {
+                    placed++;
+                }
+            }
+        }
+        if (shedTargetNanos > 0 && shedder == null) {
+            List<Topic> inputs = new ArrayList<>();
+            for (Topic t : TopicManagerSingleton.get().getTopics()) {
+                if (t.pubs.isEmpty() && !t.subs.isEmpty()) {
+                    inputs.add(t);
+                }
+            }
+            shedder = new LoadShedder(inputs, runningAgents, inFlight, shedTargetNanos, shedIntervalNanos);
+            shedder.start();
+        }
+        return placed;
+    }
+
+    // Keeps only the agents the plan assigns to this partition: the others are unsubscribed, dropped
+    // as publishers and closed. Call right after create(), before fuseChains and schedule.
+    public int retainPartition(Partitioning plan, int partition) {
+        Set<Agent> removed = new HashSet<>();
+        for (ParallelAgent pa : runningAgents) {
+            if (plan.partitionOf(pa.getAgentId()) != partition) {
+                removed.add(pa);
+                removed.add(pa.getAgent());
+            }
+        }
+        for (Topic topic : TopicManagerSingleton.get().getTopics()) {
+            for (Agent agent : List.copyOf(topic.subs)) {
+                if (removed.contains(agent)) {
+                    topic.unsubscribe(agent);
+                }
+            }
+            for (Agent agent : List.copyOf(topic.pubs)) {
+                if (removed.contains(agent)) {
+                    topic.removePublisher(agent);
+                }
+            }
+        }
+        for (ParallelAgent pa : runningAgents) {
+            if (removed.contains(pa)) {
+                pa.close();
+            }
+        }
+        runningAgents.removeIf(removed::contains);
+        return runningAgents.size();
+    }
+
+    private void applyDirective(String directive) {
+        int split = indexOfSpace(directive);
+        String kind = split < 0 ? directive : directive.substring(0, split);
+        String rest = split < 0 ? "" : directive.substring(split + 1).trim();
+        if ("@topic".equals(kind) && !rest.isEmpty()) {
+            applyTopicDirective(directive, rest);
+        } else if ("@scheduler".equals(kind)) {
+            applySchedulerDirective(directive, rest);
+        } else if ("@fuse".equals(kind) && rest.isEmpty()) {
+            fuse = true;
+        } else if ("@shed".equals(kind)) {
+            applyShedDirective(directive, rest);
+        } else {
+            throw new IllegalArgumentException("Unknown directive: " + directive);
+        }
+    }
+
+    // @topic <name> [dedupe] [deadband=<abs>] [deadband-rel=<fraction>] [min-interval-ms=<ms>] [last-value[=on|off]]
+    //        [priority=<n>] [rate=<msgs/s> [burst=<n>]]
+    private void applyTopicDirective(String directive, String rest) {
+        int split = indexOfSpace(rest);
+        String topicName = split < 0 ? rest : rest.substring(0, split);
+        Map<String, String> options = split < 0 ? Collections.emptyMap() : parseOptions(rest.substring(split + 1));
+        AgentOptions.check(options, "@topic " + topicName, "dedupe", "deadband", "deadband-rel", "min-interval-ms",
+                "last-value", "priority", "rate", "burst");
+        if (options.isEmpty()) {
+            throw new IllegalArgumentException("@topic needs at least one option: " + directive);
+        }
+        if (options.containsKey("burst") && !options.containsKey("rate")) {
+            throw new IllegalArgumentException("burst needs a rate in: " + directive);
+        }
+        Topic topic = TopicManagerSingleton.get().getTopic(topicName);
+        int settings = 0;
+        if (options.containsKey("last-value")) {
+            String lastValue = options.get("last-value");
+            topic.setLastValueEnabled(!"off".equals(lastValue) && !"false".equals(lastValue));
+            settings++;
+        }
+        if (options.containsKey("priority")) {
+            try {
+                topic.setPriority(Integer.parseInt(options.get("priority")));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad priority in: " + directive);
+            }
+            settings++;
+        }
+        if (options.containsKey("rate")) {
+            try {
+                topic.setLimiter(new InputLimiter(Double.parseDouble(options.get("rate")),
+                        Integer.parseInt(options.getOrDefault("burst", "1"))));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad rate limit in: " + directive);
+            }
+            settings += options.containsKey("burst") ? 2 : 1;
+        }
+        if (settings > 0 && options.size() == settings) {
+            return;
+        }
+        try {
+            TopicFilter filter = new TopicFilter(
+                    Boolean.parseBoolean(options.getOrDefault("dedupe", "false")),
+                    Double.parseDouble(options.getOrDefault("deadband", "0")),
+                    Double.parseDouble(options.getOrDefault("deadband-rel", "0")),
+                    TimeUnit.MILLISECONDS.toNanos(Long.parseLong(options.getOrDefault("min-interval-ms", "0"))));
+            topic.setFilter(filter);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad filter option in: " + directive);
+        }
+    }
+
+    // @scheduler workers=<n>
+    private void applySchedulerDirective(String directive, String rest) {
+        Map<String, String> options = parseOptions(rest);
+        AgentOptions.check(options, "@scheduler", "workers");
+        try {
+            schedulerWorkers = Integer.parseInt(options.getOrDefault("workers",
+                    Integer.toString(Runtime.getRuntime().availableProcessors())));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad scheduler option in: " + directive);
+        }
+    }
+
+    // Loads, links and resolves the constructors of the built-in agents, so the first config load
+    // does not pay for it (and a class-data-sharing training run archives them).
+    public static void preloadAgentClasses() {
+        for (String className : BUILTIN_AGENTS) {
+            try {
+                constructor(className);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot load " + className, e);
+            }
+        }
+    }
+
+    private static Constructor<?> constructor(String className) throws ReflectiveOperationException {
+        Constructor<?> ctor = CONSTRUCTORS.get(className);
+        if (ctor == null) {
+            Class<?> clazz = Class.forName(className);
+            try {
+                ctor = clazz.getConstructor(String[].class, String[].class, Map.class);
+            } catch (NoSuchMethodException e) {
+                ctor = clazz.getConstructor(String[].class, String[].class);
+            }
+            CONSTRUCTORS.put(className, ctor);
+        }
+        return ctor;
+    }
+
+    // @shed p99-ms=<ms> [interval-ms=<ms>]: adaptive shedding at the input topics (topics nobody in
+    // this config publishes to). Only parsed here; schedule() builds and starts the shedder.
+    private void applyShedDirective(String directive, String rest) {
+        Map<String, String> options = parseOptions(rest);
+        AgentOptions.check(options, "@shed", "p99-ms", "interval-ms");
+        if (shedTargetNanos > 0 || !options.containsKey("p99-ms")) {
+            throw new IllegalArgumentException("Expected one @shed p99-ms=<ms>: " + directive);
+        }
+        try {
+            double p99Millis = Double.parseDouble(options.get("p99-ms"));
+            shedTargetNanos = TimeUnit.MICROSECONDS.toNanos((long) (p99Millis * 1000));
+            long intervalMillis = Long.parseLong(options.getOrDefault("interval-ms", "100"));
+            shedIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad shed option in: " + directive);
+        }
+        if (shedTargetNanos <= 0 || shedIntervalNanos <= 0) {
+            throw new IllegalArgumentException("p99-ms and interval-ms must be > 0 in: " + directive);
+        }
+    }
+
+    // Engine options (pin, exec) are stripped; the agent gets the rest and must reject what it does not
+    // know. Agents without an options constructor take none.
+    private Agent instantiate(String className, String[] subs, String[] pubs, Map<String, String> options)
+            throws ReflectiveOperationException {
+        Constructor<?> ctor = constructor(className);
+        Map<String, String> agentOptions = new LinkedHashMap<>(options);
+        agentOptions.keySet().removeAll(ENGINE_OPTIONS);
+        if (ctor.getParameterCount() == 2) {
+            AgentOptions.check(agentOptions, className);
+        }
+        try {
+            return (Agent) (ctor.getParameterCount() == 3
+                    ? ctor.newInstance(subs, pubs, agentOptions)
+                    : ctor.newInstance(subs, pubs));
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IllegalArgumentException iae) {
+                throw iae;
+            }
+            throw e;
+        }
+    }
+
+    // exec=async|inline|adaptive; defaults to async. Inlining is opt-in: an inlined agent runs its
+    // downstream on the publisher's stack, so a long chain of them nests as deep as the chain.
+    private ParallelAgent.Mode parseMode(String exec) {
+        if (exec == null) {
+            return ParallelAgent.Mode.ASYNC;
+        }
+        try {
+            return ParallelAgent.Mode.valueOf(exec.toUpperCase(java.util.Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("exec must be async, inline or adaptive: " + exec);
+        }
+    }
+
+    private int indexOfSpace(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (Character.isWhitespace(line.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // "key=value key=\"quoted value\" flag" -> {key: value, key: quoted value, flag: "true"}
+    private Map<String, String> parseOptions(String text) {
+        Map<String, String> options = new LinkedHashMap<>();
+        Matcher m = OPTION.matcher(text.trim());
+        while (m.find()) {
+            String value = m.group(2);
+            if (value == null) {
+                value = "true";
+            } else if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            options.put(m.group(1), value);
+        }
+        return options;
+    }
+
     private String[] parseTopics(String line) {
         if (line.isEmpty()) {
             return new String[0];
@@ -75,6 +448,13 @@ public class GenericConfig implements Config {
 
     @Override
     public void close() {
+        if (shedder != null) {
+            shedder.close();
+            shedder = null;
+        }
+        if (!runningAgents.isEmpty()) {
+            drain(CLOSE_DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+        }
         for (ParallelAgent pa : runningAgents) {
             try {
                 pa.close();
@@ -82,5 +462,9 @@ public class GenericConfig implements Config {
             }
         }
         runningAgents.clear();
+        for (AgentWorker worker : workers) {
+            worker.close();
+        }
+        workers.clear();
     }
 }
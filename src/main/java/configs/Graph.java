@@ -2,25 +2,121 @@ package configs;
 
 import graph.Agent;
 import graph.Topic;
+import graph.TopicManager;
 import graph.TopicManagerSingleton;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 public class Graph extends ArrayList<Node> {
+    private static volatile Graph cached;
+
+    // Name index and CSR adjacency, built lazily from the list contents and dropped on every change.
+    private transient Map<String, Node> index;
+    private transient int[] edgeOffsets;
+    private transient int[] edgeTargets;
+    // TopicManager version this graph was built from; -1 if it was built or edited by hand.
+    private transient long version = -1;
+    private transient boolean readOnly;
+
+    // Shared view of the current topology; rebuilt only when TopicManager's version moves. It is
+    // read-only: copy it (new Graph() + addAll) to edit.
+    public static Graph current() {
+        long v = TopicManagerSingleton.get().getVersion();
+        Graph g = cached;
+        if (g == null || g.version != v) {
+            g = new Graph();
+            g.createFromTopics();
+            g.readOnly = true;
+            cached = g;
+        }
+        return g;
+    }
+
     public boolean hasCycles() {
-        for (Node node : this) {
-            if (node.hasCycles()) {
-                return true;
+        if (version < 0) {
+            // Built by hand: edges may lead to nodes outside the list or change after add(), so walk them.
+            for (Node node : this) {
+                if (node.hasCycles()) {
+                    return true;
+                }
             }
+            return false;
         }
-        return false;
+        // Kahn's algorithm over the CSR arrays: any node never reaching in-degree 0 sits on a cycle.
+        int[] offsets = getEdgeOffsets();
+        int[] targets = getEdgeTargets();
+        int n = size();
+        int[] inDegree = new int[n];
+        for (int target : targets) {
+            inDegree[target]++;
+        }
+        int[] ready = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                ready[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int u = ready[head++];
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                if (--inDegree[targets[e]] == 0) {
+                    ready[tail++] = targets[e];
+                }
+            }
+        }
+        return tail != n;
+    }
+
+    public Node getNode(String name) {
+        ensureIndexed();
+        return index.get(name);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (version < 0 || !(o instanceof Node node)) {
+            return super.contains(o);
+        }
+        return getNode(node.getName()) == node;
+    }
+
+    // CSR adjacency: successors of list index u are edgeTargets[edgeOffsets[u] .. edgeOffsets[u + 1]).
+    // Edges to nodes outside this graph are left out.
+    public int[] getEdgeOffsets() {
+        ensureIndexed();
+        return edgeOffsets;
+    }
+
+    public int[] getEdgeTargets() {
+        ensureIndexed();
+        return edgeTargets;
+    }
+
+    public int getEdgeCount() {
+        return getEdgeTargets().length;
+    }
+
+    // TopicManager version this graph was built from, -1 if built or edited by hand.
+    public long getVersion() {
+        return version;
     }
 
     public void createFromTopics() {
+        TopicManager manager = TopicManagerSingleton.get();
+        long v = manager.getVersion();
         Map<String, Node> nodeMap = new HashMap<>();
-        Collection<Topic> topics = TopicManagerSingleton.get().getTopics();
+        Collection<Topic> topics = manager.getTopics();
 
         for (Topic topic : topics) {
             String topicNodeId = topic.name;
@@ -55,5 +151,152 @@ public class Graph extends ArrayList<Node> {
 
         this.clear();
         this.addAll(nodeMap.values());
+        index = nodeMap;
+        buildAdjacency(true);
+        version = v;
+    }
+
+    private void ensureIndexed() {
+        if (index == null) {
+            Map<String, Node> byName = new HashMap<>();
+            for (Node node : this) {
+                byName.putIfAbsent(node.getName(), node);
+            }
+            index = byName;
+            buildAdjacency(false);
+        }
+    }
+
+    // Node ids are written only into nodes this graph created; a hand-built graph may share its nodes
+    // with other graphs, so it numbers them privately.
+    private void buildAdjacency(boolean ownsNodes) {
+        int n = size();
+        int edgeCount = 0;
+        Map<Node, Integer> ids = ownsNodes ? null : new IdentityHashMap<>();
+        for (int i = 0; i < n; i++) {
+            Node node = get(i);
+            if (ownsNodes) {
+                node.setId(i);
+            } else {
+                ids.putIfAbsent(node, i);
+            }
+            edgeCount += node.getEdges().size();
+        }
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[edgeCount];
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = e;
+            for (Node next : get(i).getEdges()) {
+                Integer id = ownsNodes ? Integer.valueOf(next.getId()) : ids.get(next);
+                if (id != null) {
+                    targets[e++] = id;
+                }
+            }
+        }
+        offsets[n] = e;
+        edgeOffsets = offsets;
+        edgeTargets = e == edgeCount ? targets : Arrays.copyOf(targets, e);
+    }
+
+    // Every mutator goes through here: the cached graph is shared and must not change, and any edit
+    // makes the index stale and the list no longer a topic snapshot.
+    private void modified() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Graph.current() is shared and read-only");
+        }
+        index = null;
+        edgeOffsets = null;
+        edgeTargets = null;
+        version = -1;
+    }
+
+    @Override
+    public boolean add(Node node) {
+        modified();
+        return super.add(node);
+    }
+
+    @Override
+    public void add(int i, Node node) {
+        modified();
+        super.add(i, node);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Node> nodes) {
+        modified();
+        return super.addAll(nodes);
+    }
+
+    @Override
+    public boolean addAll(int i, Collection<? extends Node> nodes) {
+        modified();
+        return super.addAll(i, nodes);
+    }
+
+    @Override
+    public Node set(int i, Node node) {
+        modified();
+        return super.set(i, node);
+    }
+
+    @Override
+    public Node remove(int i) {
+        modified();
+        return super.remove(i);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        modified();
+        return super.remove(o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        modified();
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        modified();
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Node> filter) {
+        modified();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    protected void removeRange(int from, int to) {
+        modified();
+        super.removeRange(from, to);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<Node> operator) {
+        modified();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super Node> c) {
+        modified();
+        super.sort(c);
+    }
+
+    @Override
+    public void clear() {
+        modified();
+        super.clear();
+    }
+
+    @Override
+    public List<Node> subList(int from, int to) {
+        return readOnly ? Collections.unmodifiableList(super.subList(from, to)) : super.subList(from, to);
     }
 }
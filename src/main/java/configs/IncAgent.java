@@ -7,10 +7,12 @@ import graph.TopicManagerSingleton;
 public class IncAgent implements Agent {
     private final String[] subs;
     private final String[] pubs;
+    private final String agentId;
 
     public IncAgent(String[] subs, String[] pubs) {
         this.subs = subs;
         this.pubs = pubs;
+        this.agentId = "IncAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
         TopicManagerSingleton.get().getTopic(subs[0]).subscribe(this);
         TopicManagerSingleton.get().getTopic(pubs[0]).addPublisher(this);
     }
@@ -22,7 +24,7 @@ public class IncAgent implements Agent {
 
     @Override
     public String getAgentId() {
-        return "IncAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
+        return agentId;
     }
 
     @Override
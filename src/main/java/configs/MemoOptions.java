@@ -0,0 +1,42 @@
+package configs;
+
+import graph.MemoCache;
+import java.util.Map;
+
+// Parses the "pure" / "memo=<capacity>" agent options from a GenericConfig class line.
+final class MemoOptions {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private MemoOptions() {
+    }
+
+    // pure: result cache of DEFAULT_CAPACITY plus change suppression; memo=<capacity> sets the size,
+    // rounded up to a power of two. memo=0 turns the cache off: with pure, suppression remains.
+    static MemoCache create(Map<String, String> options, int arity) {
+        String memo = options.get("memo");
+        if (memo != null) {
+            int capacity;
+            try {
+                capacity = Integer.parseInt(memo);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("memo must be an integer capacity: " + memo);
+            }
+            if (capacity < 0) {
+                throw new IllegalArgumentException("memo capacity must be >= 0: " + memo);
+            }
+            if (capacity == 0) {
+                return Boolean.parseBoolean(options.get("pure")) ? new MemoCache(0, arity) : null;
+            }
+            return new MemoCache(capacity, arity);
+        }
+        if (Boolean.parseBoolean(options.get("pure"))) {
+            return new MemoCache(DEFAULT_CAPACITY, arity);
+        }
+        return null;
+    }
+
+    // For agents cheaper than a cache probe (one add or multiply): pure enables change suppression only.
+    static MemoCache suppression(Map<String, String> options, int arity) {
+        return Boolean.parseBoolean(options.get("pure")) ? new MemoCache(0, arity) : null;
+    }
+}
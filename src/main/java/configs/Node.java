@@ -8,6 +8,7 @@ import java.util.Set;
 
 public class Node {
     private String name;
+    private int id = -1;  // dense index within the owning Graph
     private String kind;  // "TOPIC" or "AGENT"
     private String label; // Display text (optional, defaults to name)
     private List<Node> edges;
@@ -26,6 +27,14 @@ public class Node {
         this.name = name;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getKind() {
         return kind;
     }
@@ -0,0 +1,206 @@
+package configs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Splits the agents of a validated graph into balanced partitions while keeping few topics cut:
+// - agents start in contiguous chunks of a topological order (name order breaks ties, so every
+//   process loading the same config computes the same plan)
+// - refinement passes move single agents to the partition that most reduces the number of extra
+//   partitions each incident topic must reach, within a 5% balance slack
+// Topics are not assigned: a topic lives wherever its agents are and is bridged to the others.
+public final class Partitioning {
+    private static final int PASSES = 8;
+
+    private final int parts;
+    private final Map<String, Integer> agentPartition;
+    private final Map<String, int[]> subscriberPartitions;
+    private final int cutTopics;
+
+    private Partitioning(int parts, Map<String, Integer> agentPartition,
+                         Map<String, int[]> subscriberPartitions, int cutTopics) {
+        this.parts = parts;
+        this.agentPartition = agentPartition;
+        this.subscriberPartitions = subscriberPartitions;
+        this.cutTopics = cutTopics;
+    }
+
+    public static Partitioning of(Graph graph, int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("parts must be >= 1");
+        }
+        int n = graph.size();
+        int[] offsets = graph.getEdgeOffsets();
+        int[] targets = graph.getEdgeTargets();
+
+        // Incidence lists: agent -> topics it reads or writes, topic -> agents reading or writing it.
+        List<List<Integer>> incident = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            incident.add(new ArrayList<>());
+        }
+        for (int u = 0; u < n; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                incident.get(u).add(targets[e]);
+                incident.get(targets[e]).add(u);
+            }
+        }
+
+        int[] order = topologicalAgents(graph, offsets, targets);
+        int agents = order.length;
+        int[] part = new int[n];
+        Arrays.fill(part, -1);
+        int chunk = Math.max(1, (agents + parts - 1) / parts);
+        int[] size = new int[parts];
+        for (int i = 0; i < agents; i++) {
+            part[order[i]] = Math.min(i / chunk, parts - 1);
+            size[part[order[i]]]++;
+        }
+
+        // count[t][p]: agents of topic t placed in partition p.
+        Map<Integer, int[]> count = new HashMap<>();
+        for (int u : order) {
+            for (int t : incident.get(u)) {
+                count.computeIfAbsent(t, k -> new int[parts])[part[u]]++;
+            }
+        }
+
+        int maxSize = (int) Math.ceil(agents / (double) parts * 1.05);
+        for (int pass = 0; pass < PASSES && parts > 1; pass++) {
+            boolean moved = false;
+            for (int u : order) {
+                int from = part[u];
+                int best = from;
+                int bestGain = 0;
+                for (int t : incident.get(u)) {
+                    for (int q = 0; q < parts; q++) {
+                        if (q == best || q == from || count.get(t)[q] == 0 || size[q] + 1 > maxSize) {
+                            continue;
+                        }
+                        int gain = gain(incident.get(u), count, from, q);
+                        if (gain > bestGain) {
+                            bestGain = gain;
+                            best = q;
+                        }
+                    }
+                }
+                if (best != from) {
+                    for (int t : incident.get(u)) {
+                        count.get(t)[from]--;
+                        count.get(t)[best]++;
+                    }
+                    size[from]--;
+                    size[best]++;
+                    part[u] = best;
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                break;
+            }
+        }
+
+        Map<String, Integer> agentPartition = new HashMap<>();
+        for (int u : order) {
+            agentPartition.put(graph.get(u).getName(), part[u]);
+        }
+        Map<String, int[]> subscriberPartitions = new HashMap<>();
+        int cut = 0;
+        for (int t = 0; t < n; t++) {
+            if (!"TOPIC".equals(graph.get(t).getKind())) {
+                continue;
+            }
+            boolean[] reads = new boolean[parts];
+            for (int e = offsets[t]; e < offsets[t + 1]; e++) {
+                reads[part[targets[e]]] = true;
+            }
+            int[] spread = count.get(t);
+            int used = 0;
+            for (int q = 0; spread != null && q < parts; q++) {
+                used += spread[q] > 0 ? 1 : 0;
+            }
+            cut += used > 1 ? 1 : 0;
+            int[] readers = new int[parts];
+            int r = 0;
+            for (int q = 0; q < parts; q++) {
+                if (reads[q]) {
+                    readers[r++] = q;
+                }
+            }
+            subscriberPartitions.put(graph.get(t).getName(), Arrays.copyOf(readers, r));
+        }
+        return new Partitioning(parts, agentPartition, subscriberPartitions, cut);
+    }
+
+    // Reduction in the summed (partitions per topic) when moving one agent from one partition to another.
+    private static int gain(List<Integer> topics, Map<Integer, int[]> count, int from, int to) {
+        int gain = 0;
+        for (int t : topics) {
+            int[] c = count.get(t);
+            if (c[from] == 1) {
+                gain++;
+            }
+            if (c[to] == 0) {
+                gain--;
+            }
+        }
+        return gain;
+    }
+
+    // Kahn's algorithm over the whole graph, emitting agent nodes only; ready nodes leave in name order.
+    private static int[] topologicalAgents(Graph graph, int[] offsets, int[] targets) {
+        int n = graph.size();
+        int[] inDegree = new int[n];
+        for (int t : targets) {
+            inDegree[t]++;
+        }
+        PriorityQueue<Integer> ready = new PriorityQueue<>((a, b) -> graph.get(a).getName().compareTo(graph.get(b).getName()));
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int[] order = new int[n];
+        int agents = 0;
+        while (!ready.isEmpty()) {
+            int u = ready.poll();
+            if ("AGENT".equals(graph.get(u).getKind())) {
+                order[agents++] = u;
+            }
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                if (--inDegree[targets[e]] == 0) {
+                    ready.add(targets[e]);
+                }
+            }
+        }
+        return Arrays.copyOf(order, agents);
+    }
+
+    public int getParts() {
+        return parts;
+    }
+
+    // Partition running the agent, or -1 for agents that were not in the graph.
+    public int partitionOf(String agentId) {
+        return agentPartition.getOrDefault(agentId, -1);
+    }
+
+    public Map<String, Integer> getAgentPartitions() {
+        return Collections.unmodifiableMap(agentPartition);
+    }
+
+    // Partitions with at least one subscriber of the topic, ascending.
+    public int[] subscriberPartitions(String topic) {
+        int[] p = subscriberPartitions.get(topic);
+        return p == null ? new int[0] : p.clone();
+    }
+
+    // Topics whose agents span more than one partition.
+    public int getCutTopics() {
+        return cutTopics;
+    }
+}
@@ -1,20 +1,31 @@
 package configs;
 
-import graph.Agent;
+import graph.MemoCache;
 import graph.Message;
+import graph.PureAgent;
 import graph.TopicManagerSingleton;
+import java.util.Map;
 
-public class PlusAgent implements Agent {
+public class PlusAgent implements PureAgent {
     private final String[] subs;
     private final String[] pubs;
+    private final String agentId;
     private double x;
     private double y;
     private boolean hasX;
     private boolean hasY;
+    private final MemoCache memo;
 
     public PlusAgent(String[] subs, String[] pubs) {
+        this(subs, pubs, Map.of());
+    }
+
+    public PlusAgent(String[] subs, String[] pubs, Map<String, String> options) {
         this.subs = subs;
         this.pubs = pubs;
+        this.agentId = "PlusAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
+        AgentOptions.check(options, "PlusAgent", "pure");
+        this.memo = MemoOptions.suppression(options, 2);
         TopicManagerSingleton.get().getTopic(subs[0]).subscribe(this);
         TopicManagerSingleton.get().getTopic(subs[1]).subscribe(this);
         TopicManagerSingleton.get().getTopic(pubs[0]).addPublisher(this);
@@ -27,7 +38,12 @@ public class PlusAgent implements Agent {
 
     @Override
     public String getAgentId() {
-        return "PlusAgent[" + String.join(",", subs) + "->" + String.join(",", pubs) + "]";
+        return agentId;
+    }
+
+    @Override
+    public MemoCache getMemo() {
+        return memo;
     }
 
     @Override
@@ -36,6 +52,9 @@ public class PlusAgent implements Agent {
         y = 0;
         hasX = false;
         hasY = false;
+        if (memo != null) {
+            memo.forgetLast();
+        }
     }
 
     @Override
@@ -51,7 +70,11 @@ public class PlusAgent implements Agent {
             hasY = true;
         }
         if (hasX && hasY) {
-            TopicManagerSingleton.get().getTopic(pubs[0]).publish(new Message(x + y), getAgentId());
+            double r = x + y;
+            if (memo != null && !memo.shouldPublish(r)) {
+                return;
+            }
+            TopicManagerSingleton.get().getTopic(pubs[0]).publish(new Message(r), getAgentId());
         }
     }
 
@@ -61,6 +84,9 @@ public class PlusAgent implements Agent {
 
     @Override
     public void onClearInput(String topic) {
+        if (memo != null) {
+            memo.forgetLast();
+        }
         if (topic.equals(subs[0])) {
             hasX = false;
         } else if (topic.equals(subs[1])) {
@@ -0,0 +1,13 @@
+package graph;
+
+// Runs ParallelAgents that have left their dedicated thread. schedule() is called whenever an agent
+// goes from idle to having queued messages; the executor must eventually call runBatch on it.
+public interface AgentExecutor {
+    void schedule(ParallelAgent agent, int priority);
+
+    // Whether a publisher outside the executor may wait for space in a full mailbox of one of its
+    // agents. An executor that runs on its publishers' thread, like Simulation, must return false.
+    default boolean waitsWhenFull() {
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package graph;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A thread shared by several ParallelAgents. Agents with pending messages wait in a ready queue
+// ordered by priority (higher first, FIFO among equals); each agent only ever runs on its own
+// worker, so per-agent ordering and serialization are the same as with a dedicated thread.
+public final class AgentWorker implements AgentExecutor, AutoCloseable {
+    private static final class Ready implements Comparable<Ready> {
+        private final ParallelAgent agent;
+        private final int priority;
+        private final long seq;
+
+        private Ready(ParallelAgent agent, int priority, long seq) {
+            this.agent = agent;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Ready other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    private final PriorityBlockingQueue<Ready> ready = new PriorityBlockingQueue<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public AgentWorker(String name) {
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void schedule(ParallelAgent agent, int priority) {
+        ready.add(new Ready(agent, priority, seq.getAndIncrement()));
+    }
+
+    private void run() {
+        ParallelAgent.markAgentThread();
+        while (running) {
+            try {
+                ready.take().agent.runBatch(ParallelAgent.BATCH);
+            } catch (InterruptedException ex) {
+                if (!running) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,22 +2,34 @@ package graph;
 
 import java.util.function.BinaryOperator;
 
-public class BinOpAgent implements Agent {
+public class BinOpAgent implements PureAgent {
     private final String name;
     private final String in1Topic;
     private final String in2Topic;
     private final String outTopic;
+    private final String agentId;
     private final BinaryOperator<Double> op;
     private double x;
     private double y;
     private boolean hasX;
     private boolean hasY;
+    private final MemoCache memo;
+    private final double[] key = new double[2];
 
     public BinOpAgent(String name, String in1Topic, String in2Topic, String outTopic, BinaryOperator<Double> op) {
+        this(name, in1Topic, in2Topic, outTopic, op, 0);
+    }
+
+    // memoCapacity > 0 declares op pure: results are cached per (x, y) and unchanged outputs are not
+    // republished. Only worth it when op costs more than a cache probe.
+    public BinOpAgent(String name, String in1Topic, String in2Topic, String outTopic, BinaryOperator<Double> op,
+                      int memoCapacity) {
         this.name = name;
+        this.memo = memoCapacity > 0 ? new MemoCache(memoCapacity, 2) : null;
         this.in1Topic = in1Topic;
         this.in2Topic = in2Topic;
         this.outTopic = outTopic;
+        this.agentId = name + "[" + in1Topic + "," + in2Topic + "->" + outTopic + "]";
         this.op = op;
         TopicManagerSingleton.get().getTopic(in1Topic).subscribe(this);
         TopicManagerSingleton.get().getTopic(in2Topic).subscribe(this);
@@ -31,7 +43,12 @@ public class BinOpAgent implements Agent {
 
     @Override
     public String getAgentId() {
-        return name + "[" + in1Topic + "," + in2Topic + "->" + outTopic + "]";
+        return agentId;
+    }
+
+    @Override
+    public MemoCache getMemo() {
+        return memo;
     }
 
     @Override
@@ -40,6 +57,9 @@ public class BinOpAgent implements Agent {
         y = 0;
         hasX = false;
         hasY = false;
+        if (memo != null) {
+            memo.forgetLast();
+        }
     }
 
     @Override
@@ -55,7 +75,23 @@ public class BinOpAgent implements Agent {
             hasY = true;
         }
         if (hasX && hasY) {
-            double r = op.apply(x, y);
+            double r;
+            if (memo == null) {
+                r = op.apply(x, y);
+            } else {
+                key[0] = x;
+                key[1] = y;
+                int slot = memo.find(key);
+                if (slot >= 0) {
+                    r = memo.value(slot);
+                } else {
+                    r = op.apply(x, y);
+                    memo.put(key, r);
+                }
+                if (!memo.shouldPublish(r)) {
+                    return;
+                }
+            }
             TopicManagerSingleton.get().getTopic(outTopic).publish(new Message(r), getAgentId());
         }
     }
@@ -66,6 +102,9 @@ public class BinOpAgent implements Agent {
 
     @Override
     public void onClearInput(String topic) {
+        if (memo != null) {
+            memo.forgetLast();
+        }
         if (topic.equals(in1Topic)) {
             hasX = false;
         } else if (topic.equals(in2Topic)) {
@@ -0,0 +1,131 @@
+package graph;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Tracks one propagation wave through the graph. Every ParallelAgent task enqueued while a
+// cascade is current carries it along and becomes current again on the worker, so the cascade
+// settles exactly when its root action and every task it caused (transitively) have finished.
+public final class Cascade {
+    private static final ThreadLocal<Cascade> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final Map<String, Double> values = new ConcurrentHashMap<>();
+    private final Map<Topic, Consumer<Message>> observers = new HashMap<>();
+    private final CompletableFuture<Map<String, Double>> settled = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+    private volatile long settleNanos = -1;
+
+    public static Cascade current() {
+        return CURRENT.get();
+    }
+
+    // Publishes inputs, waits for the cascade to settle and returns the last value each output topic
+    // received within it. Outputs that were not published are absent from the result.
+    public static Map<String, Double> evaluate(Map<String, Double> inputs, Collection<String> outputs,
+                                               long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        Cascade cascade = new Cascade().capture(outputs);
+        cascade.run(() -> publishAll(inputs));
+        return cascade.await(timeout, unit);
+    }
+
+    public static void publishAll(Map<String, Double> inputs) {
+        for (Map.Entry<String, Double> input : inputs.entrySet()) {
+            Topic topic = TopicManagerSingleton.get().findTopic(input.getKey());
+            if (topic == null) {
+                throw new IllegalArgumentException("Unknown topic: " + input.getKey());
+            }
+            topic.publish(new Message(input.getValue()));
+        }
+    }
+
+    // Records the last value published on each of these topics by this cascade. Call before run().
+    public synchronized Cascade capture(Collection<String> topics) {
+        for (String name : new LinkedHashSet<>(topics)) {
+            Topic topic = TopicManagerSingleton.get().findTopic(name);
+            if (topic == null || observers.containsKey(topic)) {
+                continue;
+            }
+            Consumer<Message> observer = m -> {
+                if (CURRENT.get() == this) {
+                    values.put(name, m.asDouble);
+                }
+            };
+            topic.addObserver(observer);
+            observers.put(topic, observer);
+        }
+        return this;
+    }
+
+    // Runs action as the root of this cascade. May be called once.
+    public void run(Runnable action) {
+        Cascade prev = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            action.run();
+        } finally {
+            CURRENT.set(prev);
+            exit();
+        }
+    }
+
+    public CompletableFuture<Map<String, Double>> settled() {
+        return settled;
+    }
+
+    public boolean isSettled() {
+        return settled.isDone();
+    }
+
+    // Time from creation until the last task finished, or -1 while still in flight.
+    public long getSettleNanos() {
+        return settleNanos;
+    }
+
+    public Map<String, Double> await(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        try {
+            return settled.get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            detach();
+        }
+    }
+
+    public Map<String, Double> getValues() {
+        return Map.copyOf(values);
+    }
+
+    public synchronized void detach() {
+        observers.forEach(Topic::removeObserver);
+        observers.clear();
+    }
+
+    void enter() {
+        pending.incrementAndGet();
+    }
+
+    void exit() {
+        if (pending.decrementAndGet() == 0) {
+            settleNanos = System.nanoTime() - startNanos;
+            detach();
+            settled.complete(getValues());
+        }
+    }
+
+    static Cascade bind(Cascade cascade) {
+        Cascade prev = CURRENT.get();
+        CURRENT.set(cascade);
+        return prev;
+    }
+}
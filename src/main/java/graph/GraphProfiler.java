@@ -0,0 +1,287 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampling profiler at the ParallelAgent boundary. While active it counts every delivery into an
+ * agent (topic -> agent edges) and, as a TopicEventListener, every agent publish (agent -> topic
+ * edges) and topic publish.
+ *
+ * Timing is sampled per causal tree: one in sampleEvery deliveries of a message published from
+ * outside the graph is traced, and every callback it causes, inline or through mailboxes, is timed.
+ * That gives per-agent self time (excluding agents run inline inside it) and queue wait. Each timed
+ * callback also adds its self time to its causal path through the DAG (input topic; agent; topic;
+ * agent ...), which is the folded-stack format flame graph tools read. Estimates are scaled by
+ * sampleEvery.
+ */
+public final class GraphProfiler implements TopicEventListener {
+    private static volatile GraphProfiler active;
+    // Marks a task queued by an untraced callback: its subtree is not traced either.
+    static final Object UNTRACED = new Object();
+    private static final int MAX_DEPTH = 256;
+    private static final ThreadLocal<Frames> FRAMES = ThreadLocal.withInitial(Frames::new);
+
+    public static final class AgentProfile {
+        private final String agentId;
+        private final ConcurrentHashMap<String, LongAdder> inputs = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, LongAdder> outputs = new ConcurrentHashMap<>();
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder selfNanos = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder waitSamples = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        private AgentProfile(String agentId) {
+            this.agentId = agentId;
+        }
+
+        public String getAgentId() {
+            return agentId;
+        }
+
+        public long getCalls() {
+            long n = 0;
+            for (LongAdder a : inputs.values()) {
+                n += a.sum();
+            }
+            return n;
+        }
+
+        public long getSamples() {
+            return samples.sum();
+        }
+
+        public double getMeanSelfMicros() {
+            long n = samples.sum();
+            return n == 0 ? 0 : selfNanos.sum() / 1e3 / n;
+        }
+
+        public double getMeanWaitMicros() {
+            long n = waitSamples.sum();
+            return n == 0 ? 0 : waitNanos.sum() / 1e3 / n;
+        }
+    }
+
+    // Per-thread stack of the agent callbacks running inline inside each other.
+    private static final class Frames {
+        private final String[] path = new String[MAX_DEPTH];
+        private final long[] childNanos = new long[MAX_DEPTH];
+        private int depth;
+        private boolean traced;
+        private long roots;
+    }
+
+    private final int sampleEvery;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong stopNanos = new AtomicLong();
+    private final ConcurrentHashMap<String, AgentProfile> agents = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> topics = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> folded = new ConcurrentHashMap<>();
+
+    private GraphProfiler(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+
+    // Starts a new profile, replacing any running one. Install it as (part of) the Topic listener to
+    // also count publishes.
+    public static GraphProfiler start(int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be >= 1");
+        }
+        GraphProfiler p = new GraphProfiler(sampleEvery);
+        GraphProfiler prev = active;
+        active = p;
+        if (prev != null) {
+            prev.stopNanos.compareAndSet(0, System.nanoTime());
+        }
+        return p;
+    }
+
+    public static GraphProfiler getActive() {
+        return active;
+    }
+
+    // Stops collecting; the profile stays readable.
+    public void stop() {
+        stopNanos.compareAndSet(0, System.nanoTime());
+        if (active == this) {
+            active = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return stopNanos.get() == 0;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public double getElapsedSeconds() {
+        long end = stopNanos.get();
+        return ((end == 0 ? System.nanoTime() : end) - startNanos) / 1e9;
+    }
+
+    AgentProfile agent(String agentId) {
+        AgentProfile p = agents.get(agentId);
+        return p != null ? p : agents.computeIfAbsent(agentId, AgentProfile::new);
+    }
+
+    private static void increment(ConcurrentHashMap<String, LongAdder> counters, String key) {
+        LongAdder a = counters.get(key);
+        if (a == null) {
+            a = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        a.increment();
+    }
+
+    void delivered(AgentProfile agent, String topic) {
+        increment(agent.inputs, topic);
+    }
+
+    // What a task queued now should carry: null at the root of a cascade (not inside any callback),
+    // else the causal path of the running callback, or UNTRACED.
+    static Object currentTrace() {
+        Frames f = FRAMES.get();
+        if (f.depth == 0) {
+            return null;
+        }
+        return f.traced ? f.path[f.depth - 1] : UNTRACED;
+    }
+
+    // Runs agent.callback, timing it if it belongs to a traced cascade. trace and enqueuedNanos are
+    // what a queued task carried (see currentTrace); null and 0 for calls on the publishing thread,
+    // which continue the trace of the callback they run in, if any.
+    void call(AgentProfile profile, Agent agent, String topic, Message msg, Object trace, long enqueuedNanos) {
+        Frames f = FRAMES.get();
+        int d = f.depth;
+        if (d == MAX_DEPTH) {
+            agent.callback(topic, msg);
+            return;
+        }
+        boolean outer = d == 0;
+        if (outer) {
+            f.traced = trace == null ? ++f.roots % sampleEvery == 0 : trace != UNTRACED;
+        }
+        if (!f.traced) {
+            f.depth = d + 1;
+            try {
+                agent.callback(topic, msg);
+            } finally {
+                f.depth = d;
+            }
+            return;
+        }
+        String parent = d > 0 ? f.path[d - 1] : trace instanceof String s ? s : null;
+        f.path[d] = (parent == null ? "" : parent + ";") + topic + ";" + profile.agentId;
+        f.childNanos[d] = 0;
+        f.depth = d + 1;
+        long start = System.nanoTime();
+        if (enqueuedNanos != 0) {
+            profile.waitNanos.add(start - enqueuedNanos);
+            profile.waitSamples.increment();
+        }
+        try {
+            agent.callback(topic, msg);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long self = elapsed - f.childNanos[d];
+            f.depth = d;
+            if (d > 0) {
+                f.childNanos[d - 1] += elapsed;
+            }
+            profile.samples.increment();
+            profile.selfNanos.add(self);
+            profile.totalNanos.add(elapsed);
+            String stack = f.path[d];
+            LongAdder a = folded.get(stack);
+            if (a == null) {
+                a = folded.computeIfAbsent(stack, k -> new LongAdder());
+            }
+            a.add(self);
+        }
+    }
+
+    @Override
+    public void onPublish(String topicName, Message msg) {
+        increment(topics, topicName);
+    }
+
+    @Override
+    public void onClear(String topicName) {
+    }
+
+    @Override
+    public void onAgentPublish(String agentName, String topicName, Message msg) {
+        increment(agent(agentName).outputs, topicName);
+    }
+
+    public Map<String, Long> getTopicCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        topics.forEach((name, n) -> counts.put(name, n.sum()));
+        return counts;
+    }
+
+    // Messages per edge, keyed by {from, to} node names as in the topology graph.
+    public Map<List<String>, Long> getEdgeCounts() {
+        Map<List<String>, Long> counts = new LinkedHashMap<>();
+        for (AgentProfile a : agents.values()) {
+            a.inputs.forEach((topic, n) -> counts.put(List.of(topic, a.agentId), n.sum()));
+            a.outputs.forEach((topic, n) -> counts.put(List.of(a.agentId, topic), n.sum()));
+        }
+        return counts;
+    }
+
+    public List<AgentProfile> getAgents() {
+        return new ArrayList<>(agents.values());
+    }
+
+    // Agents by estimated self time, highest first, with their share of the total.
+    public List<Map<String, Object>> hotspots() {
+        List<AgentProfile> list = getAgents();
+        list.sort(Comparator.comparingLong((AgentProfile a) -> a.selfNanos.sum()).reversed());
+        double seconds = Math.max(getElapsedSeconds(), 1e-9);
+        long total = 0;
+        for (AgentProfile a : list) {
+            total += a.selfNanos.sum();
+        }
+        List<Map<String, Object>> report = new ArrayList<>();
+        for (AgentProfile a : list) {
+            long self = a.selfNanos.sum();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("agent", a.agentId);
+            row.put("calls", a.getCalls());
+            row.put("callsPerSecond", a.getCalls() / seconds);
+            row.put("samples", a.getSamples());
+            row.put("selfMs", self * (double) sampleEvery / 1e6);
+            row.put("selfShare", total == 0 ? 0.0 : self / (double) total);
+            row.put("meanSelfUs", a.getMeanSelfMicros());
+            row.put("meanTotalUs", a.getSamples() == 0 ? 0.0 : a.totalNanos.sum() / 1e3 / a.getSamples());
+            row.put("meanQueueWaitUs", a.getMeanWaitMicros());
+            report.add(row);
+        }
+        return report;
+    }
+
+    // One "frame;frame;... value" line per causal path, value in estimated microseconds of self time.
+    public String folded() {
+        String[] stacks = folded.keySet().toArray(new String[0]);
+        Arrays.sort(stacks);
+        StringBuilder sb = new StringBuilder();
+        for (String stack : stacks) {
+            long micros = folded.get(stack).sum() * sampleEvery / 1000;
+            if (micros > 0) {
+                sb.append(stack).append(' ').append(micros).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package graph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Counts tasks queued or running across all ParallelAgents of one graph. The hot path is a single
+// atomic increment/decrement; the lock is only touched when the count drops to zero with waiters.
+// Also aggregates time-to-quiescence samples reported by callers, overall and in a histogram window
+// (4 log-linear buckets per power of two) that takeSettlePercentileNanos reads and resets.
+public final class InFlightTracker {
+    private final AtomicLong inFlight = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition idle = lock.newCondition();
+    private volatile int waiters;
+
+    private final AtomicLong settledCount = new AtomicLong();
+    private final AtomicLong settledTotalNanos = new AtomicLong();
+    private final AtomicLong settledMaxNanos = new AtomicLong();
+    private final AtomicLongArray window = new AtomicLongArray(256);
+
+    void enter() {
+        inFlight.incrementAndGet();
+    }
+
+    void exit() {
+        if (inFlight.decrementAndGet() == 0 && waiters > 0) {
+            lock.lock();
+            try {
+                idle.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public boolean isQuiescent() {
+        return inFlight.get() == 0;
+    }
+
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        if (inFlight.get() == 0) {
+            return true;
+        }
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            waiters++;
+            while (inFlight.get() != 0) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            waiters--;
+            lock.unlock();
+        }
+    }
+
+    public void recordSettle(long nanos) {
+        settledCount.incrementAndGet();
+        settledTotalNanos.addAndGet(nanos);
+        settledMaxNanos.accumulateAndGet(nanos, Math::max);
+        window.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    // Settle time at quantile q of the samples recorded since the previous call (upper edge of its
+    // bucket, so at most 25% high), or -1 if there were none. Resets the window.
+    public long takeSettlePercentileNanos(double q) {
+        long[] counts = new long[window.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = window.getAndSet(i, 0);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperEdge(i);
+            }
+        }
+        return upperEdge(counts.length - 1);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < 4) {
+            return (int) nanos;
+        }
+        int e = 63 - Long.numberOfLeadingZeros(nanos);
+        return 4 * (e - 1) + (int) ((nanos >>> (e - 2)) & 3);
+    }
+
+    private static long upperEdge(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int e = bucket / 4 + 1;
+        long lower = (4L + bucket % 4) << (e - 2);
+        return lower + (1L << (e - 2)) - 1;
+    }
+
+    public long getSettledCount() {
+        return settledCount.get();
+    }
+
+    public double getMeanSettleMillis() {
+        long n = settledCount.get();
+        return n == 0 ? 0.0 : settledTotalNanos.get() / 1e6 / n;
+    }
+
+    public double getMaxSettleMillis() {
+        return settledMaxNanos.get() / 1e6;
+    }
+}
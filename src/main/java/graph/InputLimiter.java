@@ -0,0 +1,87 @@
+package graph;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Admission control for publishes into an input topic from outside the graph: a token bucket of
+// ratePerSecond with room for burst messages, plus an admit fraction that a LoadShedder lowers under
+// overload (messages beyond it are shed at random, i.e. the input is sampled). The bucket is kept as
+// a theoretical arrival time (GCRA) claimed with one CAS per message.
+public final class InputLimiter {
+    private final double ratePerSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong arrival = new AtomicLong(System.nanoTime());
+    private volatile double admitFraction = 1.0;
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shedByRate = new AtomicLong();
+    private final AtomicLong shedByLoad = new AtomicLong();
+
+    // ratePerSecond 0: no rate limit, only adaptive shedding.
+    public InputLimiter(double ratePerSecond, int burst) {
+        if (ratePerSecond < 0 || burst < 1) {
+            throw new IllegalArgumentException("rate must be >= 0 and burst >= 1");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.intervalNanos = ratePerSecond > 0 ? Math.max(1, (long) (1e9 / ratePerSecond)) : 0;
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    public boolean tryAcquire() {
+        double f = admitFraction;
+        if (f < 1.0 && ThreadLocalRandom.current().nextDouble() >= f) {
+            shedByLoad.incrementAndGet();
+            return false;
+        }
+        if (intervalNanos > 0) {
+            long now = System.nanoTime();
+            while (true) {
+                long t = arrival.get();
+                long start = t - now < 0 ? now : t;
+                if (start - now > toleranceNanos) {
+                    shedByRate.incrementAndGet();
+                    return false;
+                }
+                if (arrival.compareAndSet(t, start + intervalNanos)) {
+                    break;
+                }
+            }
+        }
+        admitted.incrementAndGet();
+        return true;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public double getAdmitFraction() {
+        return admitFraction;
+    }
+
+    public void setAdmitFraction(double fraction) {
+        admitFraction = Math.max(0.0, Math.min(1.0, fraction));
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getShedByRate() {
+        return shedByRate.get();
+    }
+
+    public long getShedByLoad() {
+        return shedByLoad.get();
+    }
+
+    public long getShed() {
+        return shedByRate.get() + shedByLoad.get();
+    }
+}
@@ -0,0 +1,143 @@
+package graph;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps cascade settle latency under a p99 target by shedding publishes at the input topics.
+ *
+ * Every interval it reads the p99 of the settle times recorded in the InFlightTracker since the last
+ * tick, and the fullest agent mailbox relative to its capacity (the only signal for publishes that
+ * record no settle time, e.g. binary ingestion). Over target, or with a mailbox at 90%, the admit
+ * fraction of every input topic is cut by 30%; comfortably under (half the target, mailboxes under
+ * half full) it grows back by 5 points per tick. Each input topic gets an InputLimiter if it has
+ * none, which also counts what was shed.
+ */
+public final class LoadShedder implements AutoCloseable {
+    private static final double MIN_FRACTION = 0.01;
+    private static final double DECREASE = 0.7;
+    private static final double INCREASE = 0.05;
+
+    private final List<Topic> inputs;
+    private final List<ParallelAgent> agents;
+    private final InFlightTracker tracker;
+    private final long targetNanos;
+    private final long intervalNanos;
+    private volatile double admitFraction = 1.0;
+    private volatile long lastP99Nanos = -1;
+    private volatile double lastQueueFill;
+    private volatile boolean running;
+    private Thread thread;
+
+    public LoadShedder(List<Topic> inputs, List<ParallelAgent> agents, InFlightTracker tracker,
+                       long targetP99Nanos, long intervalNanos) {
+        if (targetP99Nanos <= 0 || intervalNanos <= 0) {
+            throw new IllegalArgumentException("target and interval must be > 0");
+        }
+        this.inputs = List.copyOf(inputs);
+        this.agents = List.copyOf(agents);
+        this.tracker = tracker;
+        this.targetNanos = targetP99Nanos;
+        this.intervalNanos = intervalNanos;
+        for (Topic t : this.inputs) {
+            if (t.getLimiter() == null) {
+                t.setLimiter(new InputLimiter(0, 1));
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::loop, "LoadShedder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loop() {
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            if (running) {
+                tick();
+            }
+        }
+    }
+
+    public void tick() {
+        adjust(tracker.takeSettlePercentileNanos(0.99), queueFill());
+    }
+
+    private double queueFill() {
+        double fill = 0;
+        for (ParallelAgent pa : agents) {
+            fill = Math.max(fill, pa.getQueueSize() / (double) pa.getCapacity());
+        }
+        return fill;
+    }
+
+    // One control step from a measured p99 (-1 for no samples) and mailbox fill; returns the new
+    // admit fraction.
+    public synchronized double adjust(long p99Nanos, double queueFill) {
+        lastP99Nanos = p99Nanos;
+        lastQueueFill = queueFill;
+        double f = admitFraction;
+        if (p99Nanos > targetNanos || queueFill >= 0.9) {
+            f = Math.max(MIN_FRACTION, f * DECREASE);
+        } else if (p99Nanos < targetNanos / 2 && queueFill < 0.5) {
+            f = Math.min(1.0, f + INCREASE);
+        }
+        admitFraction = f;
+        for (Topic t : inputs) {
+            t.getLimiter().setAdmitFraction(f);
+        }
+        return f;
+    }
+
+    public List<Topic> getInputs() {
+        return inputs;
+    }
+
+    public double getAdmitFraction() {
+        return admitFraction;
+    }
+
+    public long getTargetNanos() {
+        return targetNanos;
+    }
+
+    public long getLastP99Nanos() {
+        return lastP99Nanos;
+    }
+
+    public double getLastQueueFill() {
+        return lastQueueFill;
+    }
+
+    public long getIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+    }
+
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Topic topic : inputs) {
+            topic.getLimiter().setAdmitFraction(1.0);
+        }
+    }
+}
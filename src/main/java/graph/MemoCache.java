@@ -0,0 +1,136 @@
+package graph;
+
+// Bounded inputs -> result cache for pure agents, plus change suppression of the last published
+// output. Keys are the agent's arity input values; storage is 4-way set-associative over primitive
+// arrays with LRU per set. Capacity is rounded up to a power of two of at least 4; capacity 0 keeps
+// only change suppression, for agents whose work is cheaper than a cache probe. Written only from
+// the owning agent's thread, except forgetLast; counters may be read from any thread.
+public final class MemoCache {
+    private static final int WAYS = 4;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private final int arity;
+    private final int setMask;
+    private final long[] keys;
+    private final double[] values;
+    private final long[] stamps;
+    private long clock;
+
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long suppressed;
+    private volatile boolean hasLast;
+    private long lastBits;
+
+    public MemoCache(int capacity, int arity) {
+        if (capacity < 0 || capacity > MAX_CAPACITY || arity <= 0) {
+            throw new IllegalArgumentException("capacity must be in 0.." + MAX_CAPACITY + " and arity > 0");
+        }
+        int sets = (capacity + WAYS - 1) / WAYS;
+        int slots = capacity == 0 ? 0 : (sets <= 1 ? 1 : Integer.highestOneBit(sets - 1) << 1) * WAYS;
+        this.arity = arity;
+        this.setMask = slots / WAYS - 1;
+        this.keys = new long[slots * arity];
+        this.values = new double[slots];
+        this.stamps = new long[slots];
+    }
+
+    // Slot holding the result for these inputs (see value), or -1 on a miss. Results may be NaN.
+    public int find(double[] key) {
+        if (values.length == 0) {
+            return -1;
+        }
+        int base = slot(key);
+        for (int i = base; i < base + WAYS; i++) {
+            if (stamps[i] != 0 && matches(i, key)) {
+                stamps[i] = ++clock;
+                hits++;
+                return i;
+            }
+        }
+        misses++;
+        return -1;
+    }
+
+    public double value(int slot) {
+        return values[slot];
+    }
+
+    public void put(double[] key, double result) {
+        if (values.length == 0) {
+            return;
+        }
+        int base = slot(key);
+        int victim = base;
+        for (int i = base; i < base + WAYS; i++) {
+            if (stamps[i] < stamps[victim]) {
+                victim = i;
+            }
+        }
+        for (int k = 0; k < arity; k++) {
+            keys[victim * arity + k] = Double.doubleToLongBits(key[k]);
+        }
+        values[victim] = result;
+        stamps[victim] = ++clock;
+    }
+
+    // False when result equals the previously published output, so the agent can skip the cascade.
+    public boolean shouldPublish(double result) {
+        long bits = Double.doubleToLongBits(result);
+        if (hasLast && bits == lastBits) {
+            suppressed++;
+            return false;
+        }
+        hasLast = true;
+        lastBits = bits;
+        return true;
+    }
+
+    // Call on reset, cleared inputs and a cleared output: the next result is published whatever it
+    // is. Safe from any thread.
+    public void forgetLast() {
+        hasLast = false;
+    }
+
+    public int capacity() {
+        return stamps.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    public double getHitRatio() {
+        long h = hits;
+        long total = h + misses;
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    private boolean matches(int slot, double[] key) {
+        for (int k = 0; k < arity; k++) {
+            if (keys[slot * arity + k] != Double.doubleToLongBits(key[k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slot(double[] key) {
+        long h = 0;
+        for (int k = 0; k < arity; k++) {
+            h = (h + Double.doubleToLongBits(key[k])) * 0x9E3779B97F4A7C15L;
+        }
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return ((int) h & setMask) * WAYS;
+    }
+}
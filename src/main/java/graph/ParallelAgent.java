@@ -1,25 +1,248 @@
 package graph;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class ParallelAgent implements Agent {
+    // ASYNC: always through the mailbox. INLINE: run on the publishing thread whenever the agent is
+    // idle, else queue. ADAPTIVE: like INLINE, but only while the measured callback cost stays under
+    // the inline threshold. Inline runs hold the agent's lock and require an empty mailbox, so
+    // stateful agents keep serialized, in-order execution in every mode.
+    public enum Mode {
+        ASYNC,
+        INLINE,
+        ADAPTIVE
+    }
+
+    private static final int DATA = 0;
+    private static final int CLEAR = 1;
+    private static final int RESET = 2;
+
     private static final class Task {
+        private final int kind;
         private final String topic;
         private final Message msg;
+        private final Cascade cascade;
+        private final int priority;
+        // Set while a GraphProfiler is active: see GraphProfiler.currentTrace.
+        private Object trace;
+        private long enqueuedNanos;
 
-        private Task(String topic, Message msg) {
+        private Task(int kind, String topic, Message msg, Cascade cascade, int priority) {
+            this.kind = kind;
             this.topic = topic;
             this.msg = msg;
+            this.cascade = cascade;
+            this.priority = priority;
+        }
+
+        // Queued data this control task discards: a clear its topic's values, a reset everything. The
+        // discarded messages never run, so neither do the publishes they would have caused.
+        private boolean supersedes(Task data) {
+            return kind == RESET || (kind == CLEAR && topic.equals(data.topic));
         }
     }
 
+    // Three FIFO lanes taken in strict order: control, urgent data (priority > 0), data. Only data
+    // counts towards the capacity, so a control signal is never blocked by a full mailbox. A thread
+    // that runs agents never waits for space (see markAgentThread) and may overfill the data lanes.
+    private static final class Mailbox {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final ArrayDeque<Task> control = new ArrayDeque<>();
+        private final ArrayDeque<Task> urgent = new ArrayDeque<>();
+        private final ArrayDeque<Task> data = new ArrayDeque<>();
+        private final int capacity;
+        // Data slots promised to Topic.offer callers that have not queued their task yet.
+        private int reserved;
+        // False when the agent runs on an executor driven by its publishers' own thread (Simulation).
+        private boolean waitWhenFull = true;
+
+        // capacity <= 0: unbounded.
+        private Mailbox(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void setWaitWhenFull(boolean wait) {
+            lock.lock();
+            try {
+                waitWhenFull = wait;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Queues a data task, blocking while the data lanes are at capacity unless the caller runs agents.
+        void put(Task task) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (capacity > 0 && urgent.size() + data.size() + reserved >= capacity) {
+                    if (!waitWhenFull || AGENT_THREAD.get() != null) {
+                        break;
+                    }
+                    notFull.await();
+                }
+                (task.priority > 0 ? urgent : data).add(task);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Takes a data slot for a later putReserved without waiting; false if the data lanes are full.
+        boolean reserve() {
+            lock.lock();
+            try {
+                if (capacity > 0 && urgent.size() + data.size() + reserved >= capacity) {
+                    return false;
+                }
+                reserved++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void unreserve() {
+            lock.lock();
+            try {
+                reserved--;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Queues a data task into a slot taken with reserve(); never blocks.
+        void putReserved(Task task) {
+            lock.lock();
+            try {
+                reserved--;
+                (task.priority > 0 ? urgent : data).add(task);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Queues a control task ahead of all data and returns the queued data it supersedes, removed.
+        List<Task> putControl(Task task) {
+            List<Task> dropped = new ArrayList<>(0);
+            lock.lock();
+            try {
+                control.add(task);
+                urgent.removeIf(t -> task.supersedes(t) && dropped.add(t));
+                data.removeIf(t -> task.supersedes(t) && dropped.add(t));
+                if (!dropped.isEmpty()) {
+                    notFull.signalAll();
+                }
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+            return dropped;
+        }
+
+        Task poll() {
+            lock.lock();
+            try {
+                return next();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Task take() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                Task task;
+                while ((task = next()) == null) {
+                    notEmpty.await();
+                }
+                return task;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Caller holds lock.
+        private Task next() {
+            Task task = control.poll();
+            if (task != null) {
+                return task;
+            }
+            task = urgent.poll();
+            if (task == null) {
+                task = data.poll();
+            }
+            if (task != null) {
+                notFull.signal();
+            }
+            return task;
+        }
+
+        int dataSize() {
+            lock.lock();
+            try {
+                return urgent.size() + data.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return control.size() + urgent.size() + data.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+    }
+
+    private static final System.Logger LOG = System.getLogger(ParallelAgent.class.getName());
+    // Set on threads that run agents for an AgentExecutor.
+    private static final ThreadLocal<Boolean> AGENT_THREAD = new ThreadLocal<>();
+
+    static final int BATCH = 16;
+    private static final int WARMUP = 32;
+    private static final int SAMPLE_MASK = 15;
+    public static final long DEFAULT_INLINE_THRESHOLD_NANOS = 20_000;
+
     private final Agent agent;
-    private final BlockingQueue<Task> queue;
+    private final InFlightTracker inFlight;
+    private final int capacity;
+    private final Mailbox queue;
     private final Thread worker;
+    private volatile AgentExecutor shared;
+    private volatile int priority;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
     private volatile boolean running;
+    private volatile boolean inline;
+    private volatile boolean started;
+    private volatile Mode mode = Mode.ASYNC;
+    private volatile long inlineThresholdNanos = DEFAULT_INLINE_THRESHOLD_NANOS;
+    private volatile boolean cheap;
+    private final ReentrantLock execLock = new ReentrantLock();
+    private final AtomicInteger pending = new AtomicInteger();
+    private long calls;
+    private volatile double avgCallbackNanos;
 
     public ParallelAgent(Agent agent, int capacity) {
+        this(agent, capacity, null);
+    }
+
+    public ParallelAgent(Agent agent, int capacity, InFlightTracker inFlight) {
         if (agent == null) {
             throw new NullPointerException("agent");
         }
@@ -27,19 +250,102 @@ public final class ParallelAgent implements Agent {
             throw new IllegalArgumentException("capacity");
         }
         this.agent = agent;
-        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.inFlight = inFlight;
+        this.capacity = capacity;
+        this.queue = new Mailbox(capacity);
         this.running = true;
 
         this.worker = new Thread(this::runWorker, "ParallelAgent-" + agent.getName());
         this.worker.setDaemon(true);
-        this.worker.start();
+    }
+
+    public Agent getAgent() {
+        return agent;
+    }
+
+    public boolean isFull() {
+        return !inline && queue.dataSize() >= capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public boolean isInline() {
+        return inline;
+    }
+
+    // Fused agents run unconditionally on the publishing thread (their only input has a single
+    // publisher, so calls are already serialized); the worker is only started once a message is queued.
+    public void setInline(boolean inline) {
+        this.inline = inline;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public void setInlineThresholdNanos(long nanos) {
+        this.inlineThresholdNanos = nanos;
+    }
+
+    public double getAvgCallbackNanos() {
+        return avgCallbackNanos;
+    }
+
+    // Whether the next idle callback would currently run on the publishing thread.
+    public boolean isRunningInline() {
+        return inline || mode == Mode.INLINE || (mode == Mode.ADAPTIVE && cheap);
+    }
+
+    public AgentExecutor getSharedWorker() {
+        return shared;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    // Moves this agent off its dedicated thread onto a shared worker. Only valid before the first
+    // message is queued. The mailbox keeps its capacity: publishers outside the executors still wait
+    // for space, while executor threads never do, so agents sharing a thread cannot block each other
+    // into a deadlock.
+    public synchronized void runOn(AgentExecutor worker, int priority) {
+        if (started) {
+            throw new IllegalStateException("Agent already running: " + getAgentId());
+        }
+        this.shared = worker;
+        this.priority = priority;
+        queue.setWaitWhenFull(worker.waitsWhenFull());
+        this.started = true;
+    }
+
+    // Called by an executor on each thread it runs agents on. Such a thread may be the only one able to
+    // drain the mailbox it publishes into, so it overfills a full mailbox instead of waiting; the
+    // overflow is bounded by what the waiting external publishers already let in.
+    static void markAgentThread() {
+        AGENT_THREAD.set(Boolean.TRUE);
+    }
+
+    private synchronized void ensureStarted() {
+        if (!started && running) {
+            started = true;
+            worker.start();
+        }
     }
 
     private void runWorker() {
         while (running) {
             try {
-                Task task = queue.take();
-                agent.callback(task.topic, task.msg);
+                runTask(queue.take());
             } catch (InterruptedException ex) {
                 if (!running) {
                     break;
@@ -49,6 +355,98 @@ public final class ParallelAgent implements Agent {
         }
     }
 
+    // Runs up to max queued tasks, then hands the agent back to its executor if more are waiting.
+    void runBatch(int max) {
+        try {
+            Task task;
+            for (int i = 0; i < max && running && (task = queue.poll()) != null; i++) {
+                runTask(task);
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        if (running && !queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            shared.schedule(this, priority);
+        }
+    }
+
+    private void runTask(Task task) {
+        Cascade prev = Cascade.bind(task.cascade);
+        execLock.lock();
+        try {
+            if (task.kind == DATA) {
+                invoke(GraphProfiler.getActive(), task.topic, task.msg, task.trace, task.enqueuedNanos);
+            } else {
+                applyControl(task.kind, task.topic);
+            }
+        } catch (RuntimeException ex) {
+            // One failing message must not take down the thread, nor other agents sharing it.
+            LOG.log(System.Logger.Level.ERROR, "Agent " + getAgentId() + " failed on topic " + task.topic, ex);
+        } finally {
+            execLock.unlock();
+            pending.decrementAndGet();
+            Cascade.bind(prev);
+            release(task);
+        }
+    }
+
+    // Caller holds execLock. Every 16th call after warm-up is timed into an EWMA of callback cost.
+    // p is the profiler read once by the caller, or null.
+    private void invoke(GraphProfiler p, String topic, Message msg, Object trace, long enqueuedNanos) {
+        long n = ++calls;
+        if (mode != Mode.ADAPTIVE || (n > WARMUP && (n & SAMPLE_MASK) != 0)) {
+            call(p, topic, msg, trace, enqueuedNanos);
+            return;
+        }
+        long start = System.nanoTime();
+        call(p, topic, msg, trace, enqueuedNanos);
+        double cost = System.nanoTime() - start;
+        double avg = avgCallbackNanos;
+        avg = avg == 0 ? cost : avg + (cost - avg) / 8;
+        avgCallbackNanos = avg;
+        if (avg < inlineThresholdNanos) {
+            cheap = true;
+        } else if (avg > 2 * inlineThresholdNanos) {
+            cheap = false;
+        }
+    }
+
+    private void call(GraphProfiler p, String topic, Message msg, Object trace, long enqueuedNanos) {
+        if (p == null) {
+            agent.callback(topic, msg);
+        } else {
+            p.call(p.agent(getAgentId()), agent, topic, msg, trace, enqueuedNanos);
+        }
+    }
+
+    private void applyControl(int kind, String topic) {
+        if (kind == CLEAR) {
+            agent.onClearInput(topic);
+        } else {
+            agent.reset();
+        }
+    }
+
+    // Runs on the calling thread if nothing is queued or running for this agent.
+    private boolean tryRunInline(int kind, String topic, Message msg, GraphProfiler p) {
+        if (pending.get() != 0 || !execLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (pending.get() != 0) {
+                return false;
+            }
+            if (kind == DATA) {
+                invoke(p, topic, msg, null, 0);
+            } else {
+                applyControl(kind, topic);
+            }
+            return true;
+        } finally {
+            execLock.unlock();
+        }
+    }
+
     @Override
     public String getName() {
         return agent.getName();
@@ -61,35 +459,163 @@ public final class ParallelAgent implements Agent {
 
     @Override
     public void reset() {
-        agent.reset();
+        signal(RESET, null);
     }
 
     @Override
     public void callback(String topic, Message msg) {
+        callback(topic, msg, 0);
+    }
+
+    // Takes a mailbox slot for one message that Topic.offer will deliver through offer(). False when
+    // the mailbox is full.
+    boolean reserve() {
+        return queue.reserve();
+    }
+
+    void unreserve() {
+        queue.unreserve();
+    }
+
+    // Delivers into the slot taken by reserve(): the message is always queued, never run on the
+    // calling thread, so the caller can neither block here nor further down the graph.
+    void offer(String topic, Message msg, int priority) {
         if (!running) {
+            queue.unreserve();
             return;
         }
-        try {
-            queue.put(new Task(topic, msg));
-        } catch (InterruptedException ex) {
-            Thread.currentThread().interrupt();
+        GraphProfiler p = GraphProfiler.getActive();
+        if (p != null) {
+            p.delivered(p.agent(getAgentId()), topic);
+        }
+        enqueue(dataTask(topic, msg, priority, p), true);
+    }
+
+    // Messages with priority > 0 overtake queued messages of priority 0 (set per topic, see
+    // Topic.setPriority); order is FIFO within each of the two levels.
+    public void callback(String topic, Message msg, int priority) {
+        if (!running) {
+            return;
+        }
+        GraphProfiler p = GraphProfiler.getActive();
+        if (p != null) {
+            p.delivered(p.agent(getAgentId()), topic);
+        }
+        if (inline) {
+            execLock.lock();
+            try {
+                call(p, topic, msg, null, 0);
+            } finally {
+                execLock.unlock();
+            }
+            return;
+        }
+        Mode m = mode;
+        if ((m == Mode.INLINE || (m == Mode.ADAPTIVE && cheap)) && tryRunInline(DATA, topic, msg, p)) {
+            return;
+        }
+        enqueue(dataTask(topic, msg, priority, p), false);
+    }
+
+    private static Task dataTask(String topic, Message msg, int priority, GraphProfiler p) {
+        Task task = new Task(DATA, topic, msg, Cascade.current(), priority);
+        if (p != null) {
+            task.trace = GraphProfiler.currentTrace();
+            task.enqueuedNanos = System.nanoTime();
+        }
+        return task;
+    }
+
+    // Clear/reset take the control lane, running right after the current callback ahead of any queued
+    // data. This is lossy: the queued data they supersede is discarded unprocessed, and with it the
+    // outputs it would have produced downstream. An idle agent applies them immediately under its lock.
+    private void signal(int kind, String topic) {
+        if (inline || !running) {
+            execLock.lock();
+            try {
+                applyControl(kind, topic);
+            } finally {
+                execLock.unlock();
+            }
+            return;
+        }
+        if (!tryRunInline(kind, topic, null, null)) {
+            enqueue(new Task(kind, topic, null, Cascade.current(), 0), false);
+        }
+    }
+
+    private void enqueue(Task task, boolean reserved) {
+        if (!started) {
+            ensureStarted();
+        }
+        if (task.cascade != null) {
+            task.cascade.enter();
+        }
+        if (inFlight != null) {
+            inFlight.enter();
+        }
+        pending.incrementAndGet();
+        if (task.kind != DATA) {
+            for (Task dropped : queue.putControl(task)) {
+                pending.decrementAndGet();
+                release(dropped);
+            }
+        } else if (reserved) {
+            queue.putReserved(task);
+        } else {
+            try {
+                queue.put(task);
+            } catch (InterruptedException ex) {
+                pending.decrementAndGet();
+                release(task);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (shared != null && scheduled.compareAndSet(false, true)) {
+            shared.schedule(this, priority);
+        }
+    }
+
+    private void release(Task task) {
+        if (task.cascade != null) {
+            task.cascade.exit();
+        }
+        if (inFlight != null) {
+            inFlight.exit();
         }
     }
 
     @Override
     public void close() {
-        running = false;
-        worker.interrupt();
+        synchronized (this) {
+            running = false;
+        }
+        if (worker.isAlive()) {
+            worker.interrupt();
+            try {
+                worker.join(2000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Shutdown overtakes queued data as well: it waits only for the callback in progress. Tasks left
+        // behind will never run; release any cascade waiting on them.
+        Task task;
+        while ((task = queue.poll()) != null) {
+            pending.decrementAndGet();
+            release(task);
+        }
+        execLock.lock();
         try {
-            worker.join(2000);
-        } catch (InterruptedException ex) {
-            Thread.currentThread().interrupt();
+            agent.close();
+        } finally {
+            execLock.unlock();
         }
-        agent.close();
     }
 
     @Override
     public void onClearInput(String topic) {
-        agent.onClearInput(topic);
+        signal(CLEAR, topic);
     }
 }
@@ -0,0 +1,5 @@
+package graph;
+
+public interface PureAgent extends Agent {
+    MemoCache getMemo();  // null when memoization was not enabled for this agent
+}
@@ -0,0 +1,212 @@
+package graph;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Single-threaded, deterministic executor for ParallelAgents driven by a virtual clock.
+ *
+ * Every step runs one queued message of one agent. An agent that becomes ready is due at
+ * max(now, the end of its previous message) plus a seeded random delivery delay of up to
+ * jitterNanos; due agents run in time order with seeded tie-breaking. Per-agent FIFO order is kept,
+ * while the order across agents is a seeded permutation of what real threads could produce, so a
+ * seed reproduces an interleaving exactly. Each message advances its agent's busy time by the cost
+ * configured for the agent's name (defaultCostNanos otherwise), which gives queueing delay and
+ * utilization figures without sleeping.
+ *
+ * Use from one thread only. Timing-based features (adaptive inlining, min-interval topic filters)
+ * do not follow the virtual clock.
+ */
+public final class Simulation implements AgentExecutor {
+    private static final class Event implements Comparable<Event> {
+        private final long time;
+        private final long tiebreak;
+        private final long seq;
+        private final ParallelAgent agent;
+        private final Runnable action;
+
+        private Event(long time, long tiebreak, long seq, ParallelAgent agent, Runnable action) {
+            this.time = time;
+            this.tiebreak = tiebreak;
+            this.seq = seq;
+            this.agent = agent;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            if (tiebreak != other.tiebreak) {
+                return Long.compare(tiebreak, other.tiebreak);
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    private static final class AgentStats {
+        private long busyUntil;
+        private long busyNanos;
+        private long tasks;
+        private final long cost;
+
+        private AgentStats(long cost) {
+            this.cost = cost;
+        }
+    }
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final SplittableRandom random;
+    private final long jitterNanos;
+    private final long defaultCostNanos;
+    private final Map<String, Long> costs = new HashMap<>();
+    private final Map<ParallelAgent, AgentStats> stats = new IdentityHashMap<>();
+    private long now;
+    // Virtual time at which messages published by the running step leave (now + cost for agents).
+    private long emitAt;
+    private long seq;
+    private long steps;
+
+    public Simulation(long seed, long jitterNanos, long defaultCostNanos) {
+        this.random = new SplittableRandom(seed);
+        this.jitterNanos = jitterNanos;
+        this.defaultCostNanos = defaultCostNanos;
+    }
+
+    // Virtual cost of one message for agents with this getName(), e.g. "PlusAgent".
+    public Simulation setCost(String agentName, long nanos) {
+        costs.put(agentName, nanos);
+        return this;
+    }
+
+    // Moves the agents onto this simulation. Call before any message is published.
+    public void attach(Collection<ParallelAgent> agents) {
+        for (ParallelAgent pa : agents) {
+            pa.setMode(ParallelAgent.Mode.ASYNC);
+            pa.runOn(this, 0);
+        }
+    }
+
+    public long now() {
+        return now;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    // Runs action on the simulation thread at virtual time atNanos (or now, if that has passed).
+    public void at(long atNanos, Runnable action) {
+        events.add(new Event(Math.max(atNanos, now), nextTiebreak(), seq++, null, action));
+    }
+
+    public void publishAt(long atNanos, String topic, double value) {
+        at(atNanos, () -> {
+            Topic t = TopicManagerSingleton.get().findTopic(topic);
+            if (t == null) {
+                throw new IllegalArgumentException("Unknown topic: " + topic);
+            }
+            t.publish(new Message(value));
+        });
+    }
+
+    @Override
+    public void schedule(ParallelAgent agent, int priority) {
+        AgentStats s = stats(agent);
+        long jitter = jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0;
+        events.add(new Event(Math.max(emitAt, s.busyUntil) + jitter, nextTiebreak(), seq++, agent, null));
+    }
+
+    // Messages are queued and run on the publisher's thread, so a full mailbox must never make it wait.
+    @Override
+    public boolean waitsWhenFull() {
+        return false;
+    }
+
+    private long nextTiebreak() {
+        return random.nextLong();
+    }
+
+    private AgentStats stats(ParallelAgent agent) {
+        AgentStats s = stats.get(agent);
+        if (s == null) {
+            s = new AgentStats(costs.getOrDefault(agent.getName(), defaultCostNanos));
+            stats.put(agent, s);
+        }
+        return s;
+    }
+
+    // Runs the next event. Returns false when nothing is left to do.
+    public boolean step() {
+        Event e = events.poll();
+        if (e == null) {
+            return false;
+        }
+        steps++;
+        now = e.time;
+        emitAt = now;
+        if (e.agent == null) {
+            e.action.run();
+            return true;
+        }
+        AgentStats s = stats(e.agent);
+        emitAt = now + s.cost;
+        s.busyUntil = emitAt;
+        s.busyNanos += s.cost;
+        s.tasks++;
+        e.agent.runBatch(1);
+        emitAt = now;
+        return true;
+    }
+
+    public void run() {
+        while (step()) {
+            // until idle
+        }
+    }
+
+    // Runs events due up to atNanos, then leaves the clock there.
+    public void runUntil(long atNanos) {
+        while (!events.isEmpty() && events.peek().time <= atNanos) {
+            step();
+        }
+        now = Math.max(now, atNanos);
+        emitAt = now;
+    }
+
+    // Runs until the condition holds or nothing is left; returns the condition.
+    public boolean runUntil(BooleanSupplier condition) {
+        while (!condition.getAsBoolean()) {
+            if (!step()) {
+                return condition.getAsBoolean();
+            }
+        }
+        return true;
+    }
+
+    // Publishes inputs as one cascade and runs until it settles; returns the captured output values.
+    public Map<String, Double> evaluate(Map<String, Double> inputs, Collection<String> outputs) {
+        Cascade cascade = new Cascade().capture(outputs);
+        cascade.run(() -> Cascade.publishAll(inputs));
+        runUntil(cascade::isSettled);
+        cascade.detach();
+        return cascade.getValues();
+    }
+
+    public long getTaskCount(ParallelAgent agent) {
+        AgentStats s = stats.get(agent);
+        return s == null ? 0 : s.tasks;
+    }
+
+    // Fraction of virtual time so far the agent spent processing messages.
+    public double getUtilization(ParallelAgent agent) {
+        AgentStats s = stats.get(agent);
+        return s == null || now == 0 ? 0 : s.busyNanos / (double) now;
+    }
+}
@@ -2,66 +2,286 @@ package graph;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class Topic {
+    // Outcome of offer(Message).
+    public enum Admission {
+        ACCEPTED,
+        SHED,
+        SATURATED
+    }
+
     public final String name;
     public final List<Agent> subs;
     public final List<Agent> pubs;
 
     private static TopicEventListener listener;
+    private final TopicManager manager;
+    private final int id;
+    // Last-value cache, off unless enabled: a reference to the last delivered Message, so its value
+    // and time are always read together and a publish allocates nothing.
+    private volatile boolean lastValueEnabled;
+    private volatile Message last;
+    private volatile TopicFilter filter;
+    private volatile int priority;
+    private volatile InputLimiter limiter;
+    private final List<Consumer<Message>> observers = new CopyOnWriteArrayList<>();
 
     public static void setListener(TopicEventListener l) {
         listener = l;
     }
 
     Topic(String name) {
+        this(name, null, -1);
+    }
+
+    Topic(String name, TopicManager manager, int id) {
         this.name = name;
+        this.manager = manager;
+        this.id = id;
         this.subs = new ArrayList<>();
         this.pubs = new ArrayList<>();
     }
 
+    // Dense id assigned by the TopicManager in creation order; -1 for unmanaged topics.
+    public int getId() {
+        return id;
+    }
+
+    public int getSubscriberCount() {
+        return subs.size();
+    }
+
+    public int getPublisherCount() {
+        return pubs.size();
+    }
+
+    public boolean isLastValueEnabled() {
+        return lastValueEnabled;
+    }
+
+    public void setLastValueEnabled(boolean enabled) {
+        lastValueEnabled = enabled;
+        if (!enabled) {
+            forgetLastValue();
+        }
+    }
+
+    public boolean hasLastValue() {
+        return last != null;
+    }
+
+    // Numeric value of the last delivered message; NaN if there is none or its payload is not a number.
+    public double getLastValue() {
+        Message m = last;
+        return m != null ? m.asDouble : Double.NaN;
+    }
+
+    // Publish time of the last delivered message, 0 if none.
+    public long getLastUpdateMillis() {
+        Message m = last;
+        return m != null ? m.date.getTime() : 0;
+    }
+
+    // Last delivered message, numeric or not, or null if nothing was delivered since the cache was
+    // enabled or the topic cleared.
+    public Message getLastMessage() {
+        return last;
+    }
+
+    private void forgetLastValue() {
+        last = null;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    // Messages of a topic with priority > 0 overtake ordinary data queued at its subscribers.
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public InputLimiter getLimiter() {
+        return limiter;
+    }
+
+    // Admission control for publish(Message), i.e. publishes from outside the graph; agents'
+    // publishes are never limited.
+    public void setLimiter(InputLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public TopicFilter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(TopicFilter filter) {
+        this.filter = filter;
+    }
+
+    // Observers see every delivered message but are not Agents: they are not part of the topology.
+    public void addObserver(Consumer<Message> observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(Consumer<Message> observer) {
+        observers.remove(observer);
+    }
+
     public void subscribe(Agent agent) {
         if (!subs.contains(agent)) {
             subs.add(agent);
+            topologyChanged();
         }
     }
 
     public void unsubscribe(Agent agent) {
-        subs.remove(agent);
+        if (subs.remove(agent)) {
+            topologyChanged();
+        }
     }
 
-    public void publish(Message msg) {
-        if (listener != null) {
-            listener.onPublish(name, msg);
+    public void replaceSubscriber(Agent agent, Agent replacement) {
+        int i = subs.indexOf(agent);
+        if (i >= 0) {
+            subs.set(i, replacement);
+            topologyChanged();
+        }
+    }
+
+    // Returns false if the topic's InputLimiter shed the message. Messages dropped by the filter
+    // count as admitted.
+    public boolean publish(Message msg) {
+        InputLimiter l = limiter;
+        if (l != null && !l.tryAcquire()) {
+            return false;
+        }
+        TopicFilter f = filter;
+        if (f != null && !f.accept(msg)) {
+            return true;
+        }
+        deliver(msg, false);
+        return true;
+    }
+
+    // publish(Message) for callers that must not block: a slot is reserved in every subscriber's
+    // mailbox first, and if any is full nothing is delivered (SATURATED). Subscribers are then only
+    // queued, never run on the calling thread, so the caller cannot block further down the graph either.
+    public Admission offer(Message msg) {
+        int reserved = 0;
+        for (Agent agent : subs) {
+            if (agent instanceof ParallelAgent pa) {
+                if (!pa.reserve()) {
+                    unreserve(reserved);
+                    return Admission.SATURATED;
+                }
+                reserved++;
+            }
+        }
+        InputLimiter l = limiter;
+        if (l != null && !l.tryAcquire()) {
+            unreserve(reserved);
+            return Admission.SHED;
+        }
+        TopicFilter f = filter;
+        if (f != null && !f.accept(msg)) {
+            unreserve(reserved);
+            return Admission.ACCEPTED;
         }
+        deliver(msg, true);
+        return Admission.ACCEPTED;
+    }
+
+    // Releases the slots reserved at the first count ParallelAgent subscribers.
+    private void unreserve(int count) {
         for (Agent agent : subs) {
-            agent.callback(name, msg);
+            if (count == 0) {
+                return;
+            }
+            if (agent instanceof ParallelAgent pa) {
+                pa.unreserve();
+                count--;
+            }
         }
     }
 
     public void publish(Message msg, String fromAgentName) {
+        TopicFilter f = filter;
+        if (f != null && !f.accept(msg)) {
+            return;
+        }
         if (listener != null && fromAgentName != null) {
             listener.onAgentPublish(fromAgentName, name, msg);
         }
-        publish(msg);
+        deliver(msg, false);
+    }
+
+    // reserved: every ParallelAgent subscriber holds a mailbox slot taken by offer().
+    private void deliver(Message msg, boolean reserved) {
+        if (lastValueEnabled) {
+            last = msg;
+        }
+        if (listener != null) {
+            listener.onPublish(name, msg);
+        }
+        for (Consumer<Message> observer : observers) {
+            observer.accept(msg);
+        }
+        int p = priority;
+        for (Agent agent : subs) {
+            if (reserved && agent instanceof ParallelAgent pa) {
+                pa.offer(name, msg, p);
+            } else if (p != 0 && agent instanceof ParallelAgent pa) {
+                pa.callback(name, msg, p);
+            } else {
+                agent.callback(name, msg);
+            }
+        }
     }
 
     public void addPublisher(Agent agent) {
         if (!pubs.contains(agent)) {
             pubs.add(agent);
+            topologyChanged();
         }
     }
 
     public void removePublisher(Agent agent) {
-        pubs.remove(agent);
+        if (pubs.remove(agent)) {
+            topologyChanged();
+        }
+    }
+
+    private void topologyChanged() {
+        if (manager != null) {
+            manager.topologyChanged();
+        }
     }
 
     public void clear() {
+        forgetLastValue();
+        TopicFilter f = filter;
+        if (f != null) {
+            f.reset();
+        }
         if (listener != null) {
             listener.onClear(name);
         }
         for (Agent agent : subs) {
             agent.onClearInput(name);
         }
+        // Subscribers just dropped this value, so a pure publisher must not suppress its next
+        // output as unchanged.
+        for (Agent agent : pubs) {
+            if (agent instanceof PureAgent pure) {
+                MemoCache memo = pure.getMemo();
+                if (memo != null) {
+                    memo.forgetLast();
+                }
+            }
+        }
     }
 }
@@ -4,4 +4,27 @@ public interface TopicEventListener {
     void onPublish(String topicName, Message msg);
     void onClear(String topicName);
     void onAgentPublish(String agentName, String topicName, Message msg);
+
+    // Both listeners, a first.
+    static TopicEventListener of(TopicEventListener a, TopicEventListener b) {
+        return new TopicEventListener() {
+            @Override
+            public void onPublish(String topicName, Message msg) {
+                a.onPublish(topicName, msg);
+                b.onPublish(topicName, msg);
+            }
+
+            @Override
+            public void onClear(String topicName) {
+                a.onClear(topicName);
+                b.onClear(topicName);
+            }
+
+            @Override
+            public void onAgentPublish(String agentName, String topicName, Message msg) {
+                a.onAgentPublish(agentName, topicName, msg);
+                b.onAgentPublish(agentName, topicName, msg);
+            }
+        };
+    }
 }
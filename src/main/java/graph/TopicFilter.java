@@ -0,0 +1,78 @@
+package graph;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Drops numeric publishes that do not differ enough from the last accepted value, or that arrive
+// sooner than minIntervalNanos after it. Non-numeric messages always pass. Lock-free: the last
+// accepted value and its time form one immutable state that is replaced with CAS, so concurrent
+// publishers of the same value cannot all claim it, and value and time always belong together.
+public final class TopicFilter {
+    private static final class Last {
+        private final double value;
+        private final long nanos;
+
+        private Last(double value, long nanos) {
+            this.value = value;
+            this.nanos = nanos;
+        }
+    }
+
+    private final boolean dedupe;
+    private final double absDeadband;
+    private final double relDeadband;
+    private final long minIntervalNanos;
+    private final AtomicReference<Last> last = new AtomicReference<>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public TopicFilter(boolean dedupe, double absDeadband, double relDeadband, long minIntervalNanos) {
+        if (absDeadband < 0 || relDeadband < 0 || minIntervalNanos < 0) {
+            throw new IllegalArgumentException("filter thresholds must be >= 0");
+        }
+        this.dedupe = dedupe;
+        this.absDeadband = absDeadband;
+        this.relDeadband = relDeadband;
+        this.minIntervalNanos = minIntervalNanos;
+    }
+
+    public boolean accept(Message msg) {
+        double v = msg.asDouble;
+        if (Double.isNaN(v)) {
+            return true;
+        }
+        while (true) {
+            Last prev = last.get();
+            long now = minIntervalNanos > 0 ? System.nanoTime() : 0;
+            if (prev != null && suppresses(prev, v, now)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (last.compareAndSet(prev, new Last(v, now))) {
+                return true;
+            }
+        }
+    }
+
+    private boolean suppresses(Last prev, double v, long now) {
+        if (minIntervalNanos > 0 && now - prev.nanos < minIntervalNanos) {
+            return true;
+        }
+        double delta = Math.abs(v - prev.value);
+        if (dedupe && delta == 0) {
+            return true;
+        }
+        if (absDeadband > 0 && delta <= absDeadband) {
+            return true;
+        }
+        return relDeadband > 0 && delta <= relDeadband * Math.abs(prev.value);
+    }
+
+    public void reset() {
+        last.set(null);
+    }
+
+    // Publishes dropped since creation.
+    public long getDropped() {
+        return dropped.get();
+    }
+}
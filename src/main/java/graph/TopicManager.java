@@ -1,25 +1,145 @@
 package graph;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Topic registry. Every topic also gets a dense int id (creation order), so id lookup is an array
+// read and getTopics() is a view over the id table instead of a map copy.
 public class TopicManager {
-    private final ConcurrentHashMap<String, Topic> topics;
+    private final ConcurrentHashMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final Object idLock = new Object();
+    private Topic[] table = new Topic[64];
+    // Immutable (table, size) pair: slots below size are never rewritten, so readers need no lock.
+    private volatile TopicView view = new TopicView(table, 0);
 
-    public TopicManager() {
-        this.topics = new ConcurrentHashMap<>();
+    public Topic getTopic(String name) {
+        Topic topic = topics.get(name);
+        return topic != null ? topic : register(name);
     }
 
-    public Topic getTopic(String name) {
-        return topics.computeIfAbsent(name, Topic::new);
+    // Creation is rare and serialized, since ids must be handed out in order; lookups never take the lock.
+    private Topic register(String name) {
+        synchronized (idLock) {
+            Topic topic = topics.get(name);
+            if (topic != null) {
+                return topic;
+            }
+            int id = view.size();
+            if (id == table.length) {
+                table = Arrays.copyOf(table, id * 2);
+            }
+            topic = new Topic(name, this, id);
+            table[id] = topic;
+            view = new TopicView(table, id + 1);
+            topics.put(name, topic);
+            version.incrementAndGet();
+            return topic;
+        }
+    }
+
+    // Lookup without creating: returns null for unknown names.
+    public Topic findTopic(String name) {
+        return topics.get(name);
+    }
+
+    // Returns null for ids outside the current registry.
+    public Topic getTopic(int id) {
+        TopicView v = view;
+        return id >= 0 && id < v.size() ? v.table()[id] : null;
+    }
+
+    public int getTopicCount() {
+        return view.size();
+    }
+
+    // Snapshot of all topics in id order. Later creations are not visible in it; nothing is copied.
+    public List<Topic> getTopics() {
+        return view;
+    }
+
+    // Cached last values of all topics whose last message was numeric, in id order. Only topics with
+    // the last-value cache enabled have one (see Topic.setLastValueEnabled).
+    public Map<String, Double> getLastValues() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Topic topic : view) {
+            double v = topic.getLastValue();
+            if (!Double.isNaN(v)) {
+                values.put(topic.name, v);
+            }
+        }
+        return values;
     }
 
-    public Collection<Topic> getTopics() {
-        return List.copyOf(topics.values());
+    // Cached last values of the named topics; unknown topics and topics without a numeric value are omitted.
+    public Map<String, Double> getLastValues(Collection<String> names) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (String name : names) {
+            Topic topic = findTopic(name);
+            double v = topic == null ? Double.NaN : topic.getLastValue();
+            if (!Double.isNaN(v)) {
+                values.put(name, v);
+            }
+        }
+        return values;
+    }
+
+    // Turns the last-value cache on or off for every topic that exists now.
+    public void setLastValuesEnabled(boolean enabled) {
+        for (Topic topic : view) {
+            topic.setLastValueEnabled(enabled);
+        }
+    }
+
+    // Bumped on every topic creation and subscriber/publisher change; lets readers cache derived views.
+    public long getVersion() {
+        return version.get();
+    }
+
+    void topologyChanged() {
+        version.incrementAndGet();
     }
 
     public void clear() {
-        topics.clear();
+        synchronized (idLock) {
+            topics.clear();
+            table = new Topic[64];
+            view = new TopicView(table, 0);
+            version.incrementAndGet();
+        }
+    }
+
+    private static final class TopicView extends AbstractList<Topic> implements RandomAccess {
+        private final Topic[] table;
+        private final int size;
+
+        private TopicView(Topic[] table, int size) {
+            this.table = table;
+            this.size = size;
+        }
+
+        Topic[] table() {
+            return table;
+        }
+
+        @Override
+        public Topic get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return table[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 }
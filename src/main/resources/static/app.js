@@ -8,6 +8,8 @@ const API = {
     CONFIG_UNLOAD: '/api/config/unload',
     TOPICS: '/api/topics',
     GRAPH: '/api/graph',
+    GRAPH_RATES: '/api/graph?rates=true',
+    PROFILER: '/api/profiler',
     PUBLISH: (topic) => `/api/topics/${topic}/publish`,
     CLEAR: (topic) => `/api/topics/${topic}/clear`,
     EVENTS_STREAM: '/api/events/stream'
@@ -15,11 +17,17 @@ const API = {
 
 const MAX_EVENTS = 30;
 const HIGHLIGHT_DURATION = 600;
+const RATES_INTERVAL = 2000;
+const PROFILER_INTERVAL = 10000;
 const CLEARED_DURATION = 400;
 
 let cy = null;
 let eventSource = null;
 const topicValues = new Map();
+let graphVersion = null;
+let graphEpoch = null;
+let graphEtag = null;
+let ratesTimer = null;
 
 const $ = (sel) => document.querySelector(sel);
 
@@ -60,43 +68,103 @@ function initGraph() {
     });
 }
 
+function nodeElement(node) {
+    const isTopic = node.kind === 'TOPIC';
+    const label = isTopic ? (node.label + '\n—') : node.label;
+    return { data: { id: node.id, kind: node.kind, label: label } };
+}
+
+function edgeElement(edge) {
+    return { data: { id: `e:${edge.from}|${edge.to}`, source: edge.from, target: edge.to } };
+}
+
+function runLayout() {
+    cy.zoom(1);
+    cy.pan({ x: 0, y: 0 });
+    cy.layout({ 
+        name: 'breadthfirst',
+        directed: true,
+        spacingFactor: 1.5,
+        padding: 50,
+        fit: true
+    }).run();
+}
+
+// Asks only for what changed since the last rendered version; 304 means nothing did.
 async function renderGraph() {
     try {
-        const data = await fetchJson(API.GRAPH);
+        const url = graphVersion !== null ? `${API.GRAPH}?since=${graphVersion}&epoch=${graphEpoch}` : API.GRAPH;
+        const headers = graphEtag !== null ? { 'If-None-Match': graphEtag } : {};
+        const res = await fetch(url, { headers });
+        if (res.status === 304) return;
+        if (!res.ok) throw new Error(`HTTP ${res.status}`);
+        const data = await res.json();
         const emptyMsg = $('#empty-msg');
 
-        if (!data.nodes || data.nodes.length === 0) {
+        if (data.delta) {
+            for (const edge of data.removedEdges) {
+                cy.getElementById(`e:${edge.from}|${edge.to}`).remove();
+            }
+            for (const id of data.removedNodes) {
+                cy.getElementById(id).remove();
+                topicValues.delete(id);
+            }
+            cy.add(data.nodes.map(nodeElement));
+            cy.add(data.edges.map(edgeElement));
+        } else {
+            topicValues.clear();
             cy.elements().remove();
+            cy.add(data.nodes.map(nodeElement));
+            cy.add(data.edges.map(edgeElement));
+        }
+        graphVersion = data.version;
+        graphEpoch = data.epoch;
+        graphEtag = res.headers.get('ETag');
+
+        if (cy.nodes().length === 0) {
             emptyMsg.classList.remove('hidden');
             return;
         }
-
         emptyMsg.classList.add('hidden');
+        runLayout();
+    } catch (err) {
+        showError('Failed to load graph: ' + err.message);
+    }
+}
 
-        const elements = [];
-        for (const node of data.nodes) {
-            const isTopic = node.kind === 'TOPIC';
-            const label = isTopic ? (node.label + '\n—') : node.label;
-            elements.push({ data: { id: node.id, kind: node.kind, label: label } });
+// Rates are polled only while a profile runs: /api/profiler is checked every PROFILER_INTERVAL,
+// and the rates poll stops itself once the graph reports that profiling has ended.
+async function checkProfiler() {
+    if (ratesTimer) return;
+    try {
+        const data = await fetchJson(API.PROFILER);
+        if (data.running && !ratesTimer) {
+            ratesTimer = setInterval(refreshRates, RATES_INTERVAL);
+            refreshRates();
+        }
+    } catch (err) {
+        // best effort; the next check retries
+    }
+}
+
+// While a profile is running, sizes edges by their message rate (see graph-style.js).
+async function refreshRates() {
+    if (!cy || cy.edges().length === 0) return;
+    try {
+        const data = await fetchJson(API.GRAPH_RATES);
+        if (!data.profiling) {
+            clearInterval(ratesTimer);
+            ratesTimer = null;
+            if (cy.edges('[weight]').length === 0) return;
         }
         for (const edge of data.edges) {
-            elements.push({ data: { source: edge.from, target: edge.to } });
+            const el = cy.getElementById(`e:${edge.from}|${edge.to}`);
+            if (el.nonempty()) {
+                el.data({ weight: edge.weight, rate: edge.rate });
+            }
         }
-        topicValues.clear();
-
-        cy.elements().remove();
-        cy.add(elements);
-        cy.zoom(1);
-        cy.pan({ x: 0, y: 0 });
-        cy.layout({ 
-            name: 'breadthfirst',
-            directed: true,
-            spacingFactor: 1.5,
-            padding: 50,
-            fit: true
-        }).run();
     } catch (err) {
-        showError('Failed to load graph: ' + err.message);
+        // rates are best effort; the next tick retries
     }
 }
 
@@ -308,6 +376,8 @@ function init() {
     initGraph();
     renderGraph();
     loadTopics();
+    checkProfiler();
+    setInterval(checkProfiler, PROFILER_INTERVAL);
 
     $('#load-btn').addEventListener('click', loadConfig);
     $('#unload-btn').addEventListener('click', unloadConfig);
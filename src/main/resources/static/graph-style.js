@@ -117,6 +117,13 @@ export const GRAPH_STYLE = [
             'transition-duration': '0.2s'
         }
     },
+    // Throughput overlay while profiling: width follows the edge's rate relative to the busiest edge
+    {
+        selector: 'edge[weight]',
+        style: {
+            'width': 'mapData(weight, 0, 1, 1, 12)'
+        }
+    },
     // Highlighted edges (flow effect)
     {
         selector: 'edge.active',
@@ -0,0 +1,70 @@
+package tests;
+
+import configs.AggregateAgent;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Drives AggregateAgent directly (synchronous delivery) through each join strategy.
+public class AggregateAgentSmokeTest {
+    public static void main(String[] args) {
+        assert run("latest", "sum").equals(List.of(6.0, 15.0)) : run("latest", "sum");
+        assert run("any", "sum").equals(List.of(1.0, 3.0, 6.0, 15.0, 18.0)) : run("any", "sum");
+        assert run("all", "max").equals(List.of(3.0)) : run("all", "max");
+        assert run("zip", "sum").equals(List.of(6.0)) : run("zip", "sum");
+
+        // zip pairs the k-th values, so a fast input waits for the slow ones
+        TopicManagerSingleton.get().clear();
+        List<Double> out = new ArrayList<>();
+        new AggregateAgent(new String[]{"X", "Y"}, new String[]{"Z"}, Map.of("join", "zip", "op", "product"));
+        TopicManagerSingleton.get().getTopic("Z").addObserver(m -> out.add(m.asDouble));
+        publish("X", 2);
+        publish("X", 3);
+        publish("Y", 10);
+        publish("Y", 100);
+        assert out.equals(List.of(20.0, 300.0)) : out;
+
+        // wide fan-in spanning several bitset words, one step per update
+        TopicManagerSingleton.get().clear();
+        String[] subs = new String[200];
+        for (int i = 0; i < subs.length; i++) {
+            subs[i] = "I" + i;
+        }
+        out.clear();
+        new AggregateAgent(subs, new String[]{"M"}, Map.of("op", "mean"));
+        TopicManagerSingleton.get().getTopic("M").addObserver(m -> out.add(m.asDouble));
+        for (int i = 0; i < subs.length; i++) {
+            publish(subs[i], i);
+        }
+        assert out.equals(List.of(99.5)) : out;
+        TopicManagerSingleton.get().getTopic("I7").clear();
+        publish("I0", 0);
+        assert out.size() == 1 : "Emitted with a cleared input";
+
+        TopicManagerSingleton.get().clear();
+        System.out.println("OK");
+    }
+
+    // A=1, B=2, C=3, then B=11, then A is cleared and C=7.
+    private static List<Double> run(String join, String op) {
+        TopicManagerSingleton.get().clear();
+        List<Double> out = new ArrayList<>();
+        new AggregateAgent(new String[]{"A", "B", "C"}, new String[]{"S"}, Map.of("join", join, "op", op));
+        TopicManagerSingleton.get().getTopic("S").addObserver(m -> out.add(m.asDouble));
+        publish("A", 1);
+        publish("B", 2);
+        publish("C", 3);
+        publish("B", 11);
+        TopicManagerSingleton.get().getTopic("A").clear();
+        publish("C", 7);
+        return out;
+    }
+
+    private static void publish(String topic, double value) {
+        Topic t = TopicManagerSingleton.get().getTopic(topic);
+        t.publish(new Message(value));
+    }
+}
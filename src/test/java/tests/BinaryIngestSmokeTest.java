@@ -0,0 +1,119 @@
+package tests;
+
+import app.BinaryIngestClient;
+import app.BinaryIngestServer;
+import graph.Agent;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+// Binary ingest follows the topology: ids defined before TopicManager.clear() publish into the topic
+// recreated under the same name, not the discarded one. A record overrunning its frame closes the
+// connection instead of being read from the next frame, and so do a huge topic id or byte length, which
+// must not cost the server memory or stop it serving other clients.
+public class BinaryIngestSmokeTest {
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        AtomicLong before = subscribe("A");
+        try (BinaryIngestServer server = new BinaryIngestServer(new InetSocketAddress("127.0.0.1", 0))) {
+            server.start();
+            InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+            try (BinaryIngestClient client = new BinaryIngestClient(address, 1024)) {
+                client.define(0, "A");
+                client.publish(0, 1.0);
+                client.flush();
+                await(() -> before.get() == 1);
+
+                TopicManagerSingleton.get().clear();
+                client.publish(0, 2.0);
+                client.flush();
+                await(() -> server.getDropped() == 1);
+                assert server.getPublished() == 1 : "A publish into a cleared topic must not count";
+
+                AtomicLong after = subscribe("A");
+                client.publish(0, 3.0);
+                client.flush();
+                await(() -> after.get() == 1);
+                assert before.get() == 1 : "The discarded topic still received a publish";
+                assert server.getPublished() == 2;
+            }
+
+            // Frame of 5 bytes holding the first 5 bytes of a 13-byte DOUBLE record, then a full frame.
+            ByteBuffer bad = ByteBuffer.allocate(4 + 5 + 4 + 13);
+            bad.putInt(5).put(BinaryIngestServer.DEFINE).putInt(0);
+            bad.putInt(13).put(BinaryIngestServer.DOUBLE).putInt(0).putDouble(4.0).flip();
+            try (SocketChannel raw = SocketChannel.open(address)) {
+                raw.write(bad);
+                assert raw.read(ByteBuffer.allocate(1)) < 0 : "Expected the server to close the connection";
+            }
+            assert server.getPublished() == 2 && server.getDropped() == 1;
+
+            ByteBuffer hugeId = ByteBuffer.allocate(4 + 8);
+            hugeId.putInt(8).put(BinaryIngestServer.DEFINE).putInt(Integer.MAX_VALUE - 1).putShort((short) 1)
+                    .put((byte) 'A').flip();
+            ByteBuffer hugeBytes = ByteBuffer.allocate(4 + 10);
+            hugeBytes.putInt(10).put(BinaryIngestServer.BYTES).putInt(0).putInt(Integer.MAX_VALUE - 8).put((byte) 0)
+                    .flip();
+            for (ByteBuffer frame : new ByteBuffer[] {hugeId, hugeBytes}) {
+                try (SocketChannel raw = SocketChannel.open(address)) {
+                    raw.write(frame);
+                    assert raw.read(ByteBuffer.allocate(1)) < 0 : "Expected the server to close the connection";
+                }
+            }
+            AtomicLong later = subscribe("A");
+            try (BinaryIngestClient client = new BinaryIngestClient(address, 1024)) {
+                client.define(BinaryIngestServer.MAX_TOPIC_ID, "A");
+                client.publish(BinaryIngestServer.MAX_TOPIC_ID, 5.0);
+                client.flush();
+                await(() -> later.get() == 1);
+            }
+        }
+        TopicManagerSingleton.get().clear();
+        System.out.println("OK");
+    }
+
+    private static AtomicLong subscribe(String topic) {
+        AtomicLong received = new AtomicLong();
+        TopicManagerSingleton.get().getTopic(topic).subscribe(new Agent() {
+            @Override
+            public String getName() {
+                return "CountAgent";
+            }
+
+            @Override
+            public String getAgentId() {
+                return "CountAgent";
+            }
+
+            @Override
+            public void reset() {
+            }
+
+            @Override
+            public void callback(String topic, Message msg) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void onClearInput(String topic) {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return received;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assert System.currentTimeMillis() < deadline : "Timed out";
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package tests;
+
+import configs.GenericConfig;
+import graph.Agent;
+import graph.Message;
+import graph.ParallelAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Topic.clear and agent resets hammered against publishes on a Plus/Mul diamond. With A fixed at 5,
+// every S and Y must be 6 + 4 and every P 6 * 4: any other value means a fan-in combined a
+// half-cleared input with a live one. YieldingPlus widens that window so it shows up even on one core.
+public class ClearRaceSmokeTest {
+    // PlusAgent that yields between checking its inputs and adding them.
+    public static class YieldingPlus implements Agent {
+        private final String[] subs;
+        private final String out;
+        private double x;
+        private double y;
+        private boolean hasX;
+        private boolean hasY;
+
+        public YieldingPlus(String[] subs, String[] pubs) {
+            this.subs = subs;
+            this.out = pubs[0];
+            TopicManagerSingleton.get().getTopic(subs[0]).subscribe(this);
+            TopicManagerSingleton.get().getTopic(subs[1]).subscribe(this);
+            TopicManagerSingleton.get().getTopic(out).addPublisher(this);
+        }
+
+        @Override
+        public String getName() {
+            return "YieldingPlus";
+        }
+
+        @Override
+        public String getAgentId() {
+            return "YieldingPlus[" + String.join(",", subs) + "->" + out + "]";
+        }
+
+        @Override
+        public void reset() {
+            x = 0;
+            y = 0;
+            hasX = false;
+            hasY = false;
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+            if (topic.equals(subs[0])) {
+                x = msg.asDouble;
+                hasX = true;
+            } else {
+                y = msg.asDouble;
+                hasY = true;
+            }
+            if (hasX && hasY) {
+                Thread.yield();
+                TopicManagerSingleton.get().getTopic(out).publish(new Message(x + y), getAgentId());
+            }
+        }
+
+        @Override
+        public void onClearInput(String topic) {
+            if (topic.equals(subs[0])) {
+                hasX = false;
+                x = 0;
+            } else {
+                hasY = false;
+                y = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("clear-race", ".conf");
+        Files.write(config, Arrays.asList(
+                "configs.IncAgent", "A", "B",
+                "configs.DecAgent", "A", "C",
+                "configs.PlusAgent", "B,C", "S",
+                "configs.MulAgent", "B,C", "P",
+                "tests.ClearRaceSmokeTest$YieldingPlus", "B,C", "Y"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+
+        Queue<String> torn = new ConcurrentLinkedQueue<>();
+        AtomicLong outputs = new AtomicLong();
+        record("S", 10, torn, outputs);
+        record("P", 24, torn, outputs);
+        record("Y", 10, torn, outputs);
+
+        Topic a = TopicManagerSingleton.get().getTopic("A");
+        Topic b = TopicManagerSingleton.get().getTopic("B");
+        Topic c = TopicManagerSingleton.get().getTopic("C");
+        List<ParallelAgent> fanIns = new ArrayList<>();
+        for (ParallelAgent pa : gc.getRunningAgents()) {
+            if (pa.getAgentId().contains("B,C")) {
+                fanIns.add(pa);
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    a.publish(new Message(5));
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            for (int i = 0; System.nanoTime() < deadline; i++) {
+                b.clear();
+                c.clear();
+                if (i % 4 == 0) {
+                    fanIns.forEach(ParallelAgent::reset);
+                }
+            }
+        }));
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert gc.drain(10, TimeUnit.SECONDS) : "Graph did not settle";
+
+        assert torn.isEmpty() : torn.size() + " torn outputs, e.g. " + torn.peek();
+        assert outputs.get() > 0 : "No outputs at all";
+        gc.close();
+        TopicManagerSingleton.get().clear();
+        Files.deleteIfExists(config);
+        System.out.println("OK");
+    }
+
+    private static void record(String topic, double expected, Queue<String> torn, AtomicLong outputs) {
+        TopicManagerSingleton.get().getTopic(topic).subscribe(new Agent() {
+            @Override
+            public String getName() {
+                return "Recorder";
+            }
+
+            @Override
+            public String getAgentId() {
+                return "Recorder[" + topic + "]";
+            }
+
+            @Override
+            public void reset() {
+            }
+
+            @Override
+            public void callback(String t, Message msg) {
+                outputs.incrementAndGet();
+                if (msg.asDouble != expected) {
+                    torn.add(t + "=" + msg.asDouble);
+                }
+            }
+
+            @Override
+            public void onClearInput(String t) {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+}
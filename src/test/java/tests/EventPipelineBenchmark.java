@@ -0,0 +1,112 @@
+package tests;
+
+import app.EventBus;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Usage: EventPipelineBenchmark [publishes]
+// Publishes through a Topic with the UI event listener installed and one stream client attached,
+// and reports bytes allocated per publish on the publishing thread and per event on the client thread.
+public class EventPipelineBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        TopicManagerSingleton.get().clear();
+        Topic topic = TopicManagerSingleton.get().getTopic("A");
+        Topic.setListener(EventBus.LISTENER);
+
+        AtomicLong streamed = new AtomicLong();
+        StringBuilder first = new StringBuilder();
+        Thread client = new Thread(() -> {
+            try {
+                EventBus.stream(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        streamed.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        if (first.length() == 0) {
+                            first.append(new String(b, off, len, StandardCharsets.UTF_8));
+                        }
+                        streamed.addAndGet(len);
+                    }
+                });
+            } catch (Exception ignored) {
+            }
+        }, "EventStreamClient");
+        client.setDaemon(true);
+        client.start();
+        Thread.sleep(100);
+
+        Message[] messages = {new Message(42.0), new Message(2.5), new Message("text")};
+        for (int i = 0; i < 200_000; i++) {
+            topic.publish(messages[i % 3], "Agent");
+        }
+        Thread.sleep(100);
+
+        long clientBefore = threads.getThreadAllocatedBytes(client.threadId());
+        long eventsBefore = EventBus.getPublishedCount();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            topic.publish(messages[i % 3], "Agent");
+        }
+        long nanos = System.nanoTime() - start;
+        double perPublish = (threads.getCurrentThreadAllocatedBytes() - before) / (double) count;
+        long events = EventBus.getPublishedCount() - eventsBefore;
+        Thread.sleep(100);
+        double perEvent = (threads.getThreadAllocatedBytes(client.threadId()) - clientBefore) / (double) events;
+
+        System.out.printf("publishes: %d in %.1f ms (%.0f ns/publish, 2 events each)%n", count, nanos / 1e6, nanos / (double) count);
+        System.out.printf("allocated: %.2f B/publish (publisher), %.2f B/event (stream client)%n", perPublish, perEvent);
+
+        String frame = first.toString();
+        assert frame.startsWith("data: {\"ts\":") && frame.endsWith("}\n\n") : "Bad frame " + frame;
+        assert EventBus.getEvents(2).size() == 2;
+        assert perPublish < 16 : "Publishing allocates " + perPublish + " B";
+
+        // Non-finite values must still give valid JSON frames.
+        StringBuffer captured = new StringBuffer();
+        Thread capture = new Thread(() -> {
+            try {
+                EventBus.stream(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        captured.append((char) b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        captured.append(new String(b, off, len, StandardCharsets.UTF_8));
+                    }
+                });
+            } catch (Exception ignored) {
+            }
+        }, "EventStreamCapture");
+        capture.setDaemon(true);
+        capture.start();
+        Thread.sleep(100);
+        Topic inf = TopicManagerSingleton.get().getTopic("Inf");
+        inf.publish(new Message(Double.POSITIVE_INFINITY));
+        inf.publish(new Message(Double.NEGATIVE_INFINITY));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (captured.toString().split("\"from\":\"Inf\"", -1).length < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        String frames = captured.toString();
+        assert frames.contains("\"from\":\"Inf\",\"value\":null}") && !frames.contains("Infinity")
+                : "Non-finite value written as " + frames;
+
+        Topic.setListener(null);
+        TopicManagerSingleton.get().clear();
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,118 @@
+package tests;
+
+import app.ApiController.EventType;
+import app.ApiController.FlowEvent;
+import app.ApiController;
+import app.EventStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.springframework.http.ResponseEntity;
+
+public class EventStoreSmokeTest {
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("events");
+        int count = 250_000;
+        try (EventStore store = new EventStore(dir, 100_000, 0, 0)) {
+            for (int i = 0; i < count; i++) {
+                String source = i % 10 == 0 ? "Agent" : "T" + (i % 7);
+                EventType type = i % 10 == 0 ? EventType.AGENT_PUBLISH : EventType.TOPIC_PUBLISH;
+                store.append(1_000 + i, type, source, i % 3 == 0 ? Double.NaN : i);
+            }
+            assert store.getSegmentCount() == 3 : "Expected 3 segments but got " + store.getSegmentCount();
+
+            List<FlowEvent> window = store.query(1_000 + 99_990, 1_000 + 100_020, "T3", null, 100);
+            for (FlowEvent e : window) {
+                assert e.from().equals("T3") && e.ts() >= 100_990 && e.ts() <= 101_020 : "Bad event " + e;
+            }
+            long expected = IntStream.rangeClosed(99_990, 100_020)
+                    .filter(i -> i % 10 != 0 && i % 7 == 3).count();
+            assert window.size() == expected : "Expected " + expected + " events but got " + window.size();
+
+            List<FlowEvent> agents = store.query(0, Long.MAX_VALUE, null, EventType.AGENT_PUBLISH, 1_000_000);
+            assert agents.size() == count / 10 : "Expected " + count / 10 + " agent events but got " + agents.size();
+            assert store.query(0, Long.MAX_VALUE, "Missing", null, 10).isEmpty();
+
+            // The endpoint clamps limit to 1..100000 and reports truncation against the clamped value.
+            ApiController api = new ApiController(Optional.of(store));
+            assert truncated(api.queryEvents(0, Long.MAX_VALUE, null, null, 200_000))
+                    : "Cut at 100000 but not truncated";
+            assert !truncated(api.queryEvents(0, Long.MAX_VALUE, "Missing", null, 0)) : "Nothing found yet truncated";
+            new ApiController(Optional.empty()); // detaches the store from EventBus again
+        }
+
+        // Reopened stores see earlier events and keep source ids stable.
+        try (EventStore store = new EventStore(dir, 100_000, 2, 0)) {
+            assert store.size() == count : "Expected " + count + " events after reopen but got " + store.size();
+            store.append(1_000 + count, EventType.TOPIC_CLEARED, "T3", Double.NaN);
+            FlowEvent last = store.query(1_000 + count, Long.MAX_VALUE, "T3", null, 10).get(0);
+            assert last.type() == EventType.TOPIC_CLEARED && last.value() == null : "Bad event " + last;
+            List<FlowEvent> firstT3 = store.query(0, Long.MAX_VALUE, "T3", EventType.TOPIC_PUBLISH, 3);
+            assert firstT3.size() == 3 && firstT3.get(0).ts() == 1_003 && firstT3.get(2).ts() == 1_024 : firstT3;
+
+            // offer() hands events to the writer thread; close() still stores what is pending.
+            for (int i = 1; i <= 100; i++) {
+                store.offer(1_000 + count + i, EventType.TOPIC_PUBLISH, "Offered", i);
+            }
+            store.awaitWritten();
+            assert store.query(0, Long.MAX_VALUE, "Offered", null, 1_000).size() == 100;
+            store.offer(2_000 + count, EventType.TOPIC_PUBLISH, "Offered", 101);
+        }
+        try (EventStore store = new EventStore(dir, 100_000, 0, 0)) {
+            assert store.query(0, Long.MAX_VALUE, "Offered", null, 1_000).size() == 101 : "close() lost pending events";
+            assert store.getDropped() == 0;
+        }
+
+        // Retention while a reader queries: dropped segments are unmapped and deleted once no query
+        // holds them, and queries never see a torn segment.
+        Path small = Files.createTempDirectory("events-retention");
+        try (EventStore store = new EventStore(small, 1_000, 2, 0)) {
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicBoolean bad = new AtomicBoolean();
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    long prev = Long.MIN_VALUE;
+                    for (FlowEvent e : store.query(0, Long.MAX_VALUE, "T1", null, 10_000)) {
+                        if (!e.from().equals("T1") || e.ts() < prev) {
+                            bad.set(true);
+                        }
+                        prev = e.ts();
+                    }
+                }
+            });
+            reader.start();
+            for (int i = 0; i < 50_000; i++) {
+                store.append(i, EventType.TOPIC_PUBLISH, "T" + (i % 3), i);
+            }
+            done.set(true);
+            reader.join();
+            assert !bad.get() : "Query returned a wrong or out-of-order event";
+            assert store.getSegmentCount() == 2 && store.size() == 2_000;
+            try (Stream<Path> files = Files.list(small)) {
+                assert files.filter(f -> f.toString().endsWith(".seg")).count() == 2 : "Dropped segments left on disk";
+            }
+            Path maps = Path.of("/proc/self/maps");
+            if (Files.exists(maps)) {
+                assert Files.readAllLines(maps).stream().noneMatch(l -> l.contains(small.toString()) && l.contains("(deleted)"))
+                        : "Dropped segments are still mapped";
+            }
+        }
+
+        for (Path d : List.of(dir, small)) {
+            try (Stream<Path> files = Files.walk(d)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+        System.out.println("OK");
+    }
+
+    private static boolean truncated(ResponseEntity<Map<String, Object>> response) {
+        return (Boolean) response.getBody().get("truncated");
+    }
+}
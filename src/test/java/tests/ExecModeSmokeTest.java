@@ -0,0 +1,113 @@
+package tests;
+
+import configs.GenericConfig;
+import graph.Agent;
+import graph.InFlightTracker;
+import graph.Message;
+import graph.ParallelAgent;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Agents default to async; exec=adaptive runs an agent inline while its sampled callback cost stays
+// under the threshold and moves it back to its worker once the cost passes twice the threshold.
+public class ExecModeSmokeTest {
+    static volatile long sleepMs;
+
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("exec", ".conf");
+        Files.write(config, Arrays.asList("configs.IncAgent", "A", "B", "configs.IncAgent exec=adaptive", "B", "C"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        for (ParallelAgent pa : gc.getRunningAgents()) {
+            ParallelAgent.Mode expected = pa.getAgentId().contains("A->") ? ParallelAgent.Mode.ASYNC
+                    : ParallelAgent.Mode.ADAPTIVE;
+            assert pa.getMode() == expected : pa.getAgentId() + " " + pa.getMode();
+        }
+        gc.close();
+
+        TopicManagerSingleton.get().clear();
+        Files.write(config, Arrays.asList("configs.IncAgent exec=sometimes", "A", "B"));
+        gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        boolean rejected = false;
+        try {
+            gc.create();
+        } catch (IllegalArgumentException e) {
+            rejected = e.getMessage().contains("sometimes");
+        }
+        assert rejected : "Unknown exec mode should be rejected";
+        gc.close();
+        TopicManagerSingleton.get().clear();
+        Files.deleteIfExists(config);
+
+        InFlightTracker tracker = new InFlightTracker();
+        ParallelAgent pa = new ParallelAgent(new SleepAgent(), 100, tracker);
+        pa.setMode(ParallelAgent.Mode.ADAPTIVE);
+        pa.setInlineThresholdNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        assert !pa.isRunningInline() : "No samples yet";
+        publish(pa, tracker, 100);
+        assert pa.isRunningInline() : "Cheap callbacks should go inline, avg " + pa.getAvgCallbackNanos();
+
+        // One 10 ms sample (every 16th call is timed) lifts the average over twice the 200 µs threshold.
+        sleepMs = 10;
+        publish(pa, tracker, 20);
+        assert !pa.isRunningInline() : "Expensive callbacks should leave inline, avg " + pa.getAvgCallbackNanos();
+        assert pa.getAvgCallbackNanos() > TimeUnit.MICROSECONDS.toNanos(400);
+
+        pa.setMode(ParallelAgent.Mode.ASYNC);
+        sleepMs = 0;
+        publish(pa, tracker, 100);
+        assert !pa.isRunningInline() : "ASYNC never runs inline";
+        pa.close();
+        System.out.println("OK");
+    }
+
+    // One message at a time, so an idle agent can take each one inline.
+    private static void publish(ParallelAgent pa, InFlightTracker tracker, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            pa.callback("in", new Message(i));
+            assert tracker.awaitQuiescence(5, TimeUnit.SECONDS);
+        }
+    }
+
+    static final class SleepAgent implements Agent {
+        @Override
+        public String getName() {
+            return "SleepAgent";
+        }
+
+        @Override
+        public String getAgentId() {
+            return "SleepAgent";
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+            long ms = sleepMs;
+            if (ms > 0) {
+                try {
+                    Thread.sleep(ms);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void onClearInput(String topic) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
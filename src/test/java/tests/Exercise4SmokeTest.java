@@ -2,11 +2,16 @@ package tests;
 
 import configs.GenericConfig;
 import graph.Agent;
+import graph.Cascade;
 import graph.Message;
 import graph.TopicManagerSingleton;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class Exercise4SmokeTest {
     public static void main(String[] args) throws Exception {
@@ -60,12 +65,13 @@ public class Exercise4SmokeTest {
 
         TopicManagerSingleton.get().getTopic("D").subscribe(captureAgent);
 
-        TopicManagerSingleton.get().getTopic("A").publish(new Message(5.0));
-        TopicManagerSingleton.get().getTopic("B").publish(new Message(8.0));
-
-        Thread.sleep(500);
+        Map<String, Double> inputs = new LinkedHashMap<>();
+        inputs.put("A", 5.0);
+        inputs.put("B", 8.0);
+        Map<String, Double> values = Cascade.evaluate(inputs, List.of("D"), 2, TimeUnit.SECONDS);
 
         assert captured[0] == 14.0 : "Expected 14.0 but got " + captured[0];
+        assert values.get("D") == 14.0 : "Expected D=14.0 but got " + values;
 
         gc.close();
         gc.close();
@@ -0,0 +1,116 @@
+package tests;
+
+import configs.ExprCompiler;
+import configs.GenericConfig;
+import graph.Agent;
+import graph.Cascade;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ExprAgentSmokeTest {
+    public static void main(String[] args) throws Throwable {
+        MethodHandle h = ExprCompiler.compile("-(x - 2 * 3) / y + 1.5", new String[] {"x", "y"});
+        double direct = (double) h.invokeExact(new double[] {10.0, 2.0});
+        assert direct == -0.5 : "Expected -0.5 but got " + direct;
+
+        boolean rejected = false;
+        try {
+            ExprCompiler.compile("A + C", new String[] {"A", "B"});
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assert rejected : "Unknown topic in expression should be rejected";
+
+        MethodHandle quoted = ExprCompiler.compile("'sensor-1.temp' * 1e-3 + 2E+1 - '9x'", new String[] {"sensor-1.temp", "9x"});
+        double scaled = (double) quoted.invokeExact(new double[] {2000.0, 1.0});
+        assert scaled == 21.0 : "Expected 21 but got " + scaled;
+
+        TopicManagerSingleton.get().clear();
+        assert rejects("configs.IncAgent memo=16") : "Option on an agent without options should be rejected";
+        assert rejects("configs.ExprAgent expr=\"A + B\" exrp=1") : "Misspelled option should be rejected";
+        assert !rejects("configs.IncAgent pin exec=async") : "Engine options apply to every agent";
+
+        TopicManagerSingleton.get().clear();
+
+        Path tempFile = Files.createTempFile("config", ".txt");
+        Files.write(tempFile, Arrays.asList(
+            "configs.ExprAgent expr=\"(A + B) * (B - A)\"",
+            "A,B",
+            "R3"
+        ));
+
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(tempFile.toString());
+        gc.create();
+
+        final double[] captured = new double[1];
+        captured[0] = Double.NaN;
+
+        Agent captureAgent = new Agent() {
+            @Override
+            public String getName() {
+                return "CaptureAgent";
+            }
+
+            @Override
+            public String getAgentId() {
+                return "CaptureAgent";
+            }
+
+            @Override
+            public void reset() {
+            }
+
+            @Override
+            public void callback(String topic, Message msg) {
+                captured[0] = msg.asDouble;
+            }
+
+            @Override
+            public void onClearInput(String topic) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        TopicManagerSingleton.get().getTopic("R3").subscribe(captureAgent);
+
+        Map<String, Double> first = Cascade.evaluate(Map.of("A", 5.0), List.of("R3"), 2, TimeUnit.SECONDS);
+        assert first.isEmpty() && Double.isNaN(captured[0]) : "Should wait for all inputs";
+        Cascade.evaluate(Map.of("B", 8.0), List.of("R3"), 2, TimeUnit.SECONDS);
+
+        double expected = (5.0 + 8.0) * (8.0 - 5.0);
+        assert captured[0] == expected : "Expected " + expected + " but got " + captured[0];
+
+        gc.close();
+        Files.deleteIfExists(tempFile);
+
+        System.out.println("OK");
+    }
+
+    private static boolean rejects(String classLine) throws Exception {
+        Path config = Files.createTempFile("options", ".txt");
+        Files.write(config, Arrays.asList(classLine, "A,B", "C"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        try {
+            gc.create();
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        } finally {
+            gc.close();
+            TopicManagerSingleton.get().clear();
+            Files.deleteIfExists(config);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package tests;
+
+import configs.GenericConfig;
+import configs.Graph;
+import graph.Cascade;
+import graph.ParallelAgent;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// A -> Inc -> B -> Inc -> C -> {Dec -> D, Inc -> E} -> Plus -> F: only the B hop is a linear chain.
+// Fusion needs @fuse, keeps the results, and duplicate agent ids are rejected instead of merged.
+public class FusionSmokeTest {
+    private static final List<String> AGENTS = Arrays.asList(
+            "configs.IncAgent", "A", "B",
+            "configs.IncAgent", "B", "C",
+            "configs.DecAgent", "C", "D",
+            "configs.IncAgent", "C", "E",
+            "configs.PlusAgent", "D,E", "F");
+
+    public static void main(String[] args) throws Exception {
+        assert fuse(AGENTS).equals(List.of()) : "Fusion must be opt-in";
+
+        List<String> withFuse = new ArrayList<>(AGENTS);
+        withFuse.add(0, "@fuse");
+        assert fuse(withFuse).equals(List.of("IncAgent[B->C]")) : "Expected only the B hop fused";
+
+        List<String> duplicate = new ArrayList<>(AGENTS);
+        duplicate.addAll(List.of("configs.IncAgent", "A", "B"));
+        boolean rejected = false;
+        try {
+            fuse(duplicate);
+        } catch (IllegalArgumentException e) {
+            rejected = e.getMessage().contains("IncAgent[A->B]");
+        }
+        assert rejected : "Duplicate agent id should be rejected";
+        TopicManagerSingleton.get().clear();
+        System.out.println("OK");
+    }
+
+    // Loads the config, fuses it and checks F for A=1; returns the ids of the fused agents.
+    private static List<String> fuse(List<String> lines) throws Exception {
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("fuse", ".conf");
+        Files.write(config, lines);
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        try {
+            gc.create();
+            int fused = gc.fuseChains(Graph.current());
+            List<String> ids = new ArrayList<>();
+            for (ParallelAgent pa : gc.getRunningAgents()) {
+                if (pa.isInline()) {
+                    ids.add(pa.getAgentId());
+                }
+            }
+            assert ids.size() == fused : fused + " vs " + ids;
+            for (int i = 0; i < 100; i++) {
+                Map<String, Double> out = Cascade.evaluate(Map.of("A", (double) i), List.of("F"), 2, TimeUnit.SECONDS);
+                double c = i + 2;
+                assert out.get("F") == 2 * c : "Expected F for A=" + i + " but got " + out;
+            }
+            return ids;
+        } finally {
+            gc.close();
+            Files.deleteIfExists(config);
+        }
+    }
+}
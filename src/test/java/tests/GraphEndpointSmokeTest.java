@@ -0,0 +1,54 @@
+package tests;
+
+import app.ApiController;
+import app.ApiController.ConfigLoadRequest;
+import graph.TopicManagerSingleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.http.ResponseEntity;
+
+// /api/graph through the controller: ETags carry the boot epoch, a matching one gets a 304, deltas
+// need this boot's epoch, and neighborhoods follow edges both ways.
+public class GraphEndpointSmokeTest {
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        ApiController api = new ApiController(Optional.empty());
+        api.loadConfig(new ConfigLoadRequest("configs.IncAgent\nA\nB\nconfigs.DecAgent\nB\nC\n"));
+
+        ResponseEntity<Map<String, Object>> full = graph(api, null, null, null, null);
+        String etag = full.getHeaders().getETag();
+        Object version = full.getBody().get("version");
+        Object epoch = full.getBody().get("epoch");
+        assert full.getStatusCode().value() == 200 && etag.equals("\"" + epoch + "-" + version + "\"") : etag;
+        assert graph(api, etag, null, null, null).getStatusCode().value() == 304 : "Same tag should get a 304";
+        assert graph(api, "\"" + version + "\"", null, null, null).getStatusCode().value() == 200
+                : "A tag without this boot's epoch must not match";
+
+        Map<String, Object> around = graph(api, null, null, null, "B").getBody();
+        assert ids(around).equals(Set.of("B", "IncAgent[A->B]", "DecAgent[B->C]")) : around;
+        assert ids(graph(api, null, null, null, "B").getBody()).equals(ids(around)) : "Neighborhood not stable";
+
+        api.loadConfig(new ConfigLoadRequest("configs.IncAgent\nA\nB\n"));
+        long since = ((Number) version).longValue();
+        Map<String, Object> stale = graph(api, null, since, "old-boot", null).getBody();
+        assert stale.get("delta") == null : "since= from another boot must get the full graph";
+        Map<String, Object> current = graph(api, null, null, null, null).getBody();
+        assert ids(current).equals(Set.of("A", "B", "IncAgent[A->B]")) : current;
+
+        TopicManagerSingleton.get().clear();
+        System.out.println("OK");
+    }
+
+    private static ResponseEntity<Map<String, Object>> graph(ApiController api, String ifNoneMatch, Long since,
+                                                             String epoch, String around) {
+        return api.getGraph(ifNoneMatch, since, epoch, around, 1, 0, 0, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> ids(Map<String, Object> body) {
+        return ((List<Map<String, String>>) body.get("nodes")).stream().map(n -> n.get("id")).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,67 @@
+package tests;
+
+import configs.GenericConfig;
+import configs.Graph;
+import configs.Node;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Graphs built by hand and from topics agree on cycles, lookup and adjacency; the shared
+// Graph.current() snapshot cannot be modified.
+public class GraphSmokeTest {
+    public static void main(String[] args) throws Exception {
+        Node x = new Node("x");
+        Node y = new Node("y");
+        x.addEdge(y);
+        Graph manual = new Graph();
+        manual.add(x);
+        manual.add(y);
+        assert !manual.hasCycles() : "x -> y has no cycle";
+        assert manual.contains(x) && manual.getNode("y") == y;
+        assert manual.getEdgeCount() == 1 && manual.getEdgeTargets()[0] == 1;
+        y.addEdge(x);
+        assert manual.hasCycles() : "Edges added after add() must be seen";
+        manual.remove(y);
+        assert !manual.contains(y) && manual.getNode("y") == null && manual.getEdgeCount() == 0 : "Index is stale";
+
+        Node outside = new Node("outside");
+        outside.addEdge(outside);
+        Graph partial = new Graph();
+        partial.add(new Node("z"));
+        partial.get(0).addEdge(outside);
+        assert partial.hasCycles() : "A cycle reachable outside the list still counts, as before";
+
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("graph", ".conf");
+        Files.write(config, Arrays.asList("configs.IncAgent", "A", "B", "configs.DecAgent", "B", "C"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        Graph current = Graph.current();
+        assert current == Graph.current() : "Unchanged topology should reuse the snapshot";
+        assert current.size() == 5 && current.getEdgeCount() == 4 && !current.hasCycles();
+        assert current.contains(current.getNode("IncAgent[A->B]"));
+        boolean readOnly = false;
+        try {
+            current.add(new Node("D"));
+        } catch (UnsupportedOperationException e) {
+            readOnly = true;
+        }
+        assert readOnly && current.getNode("D") == null : "Graph.current() must be read-only";
+
+        Graph copy = new Graph();
+        copy.addAll(current);
+        copy.add(0, copy.remove(copy.size() - 1));
+        assert copy.size() == 5 && !copy.hasCycles() && copy.getVersion() == -1 && copy.getEdgeCount() == 4;
+        for (int i = 0; i < current.size(); i++) {
+            assert current.get(i).getId() == i : "Indexing a copy must not renumber the shared nodes";
+        }
+
+        gc.close();
+        TopicManagerSingleton.get().clear();
+        Files.deleteIfExists(config);
+        System.out.println("OK");
+    }
+}
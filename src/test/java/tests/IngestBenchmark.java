@@ -0,0 +1,91 @@
+package tests;
+
+import app.BinaryIngestClient;
+import app.BinaryIngestServer;
+import graph.Agent;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Usage: IngestBenchmark [count] [restBaseUrl]
+// Measures loopback TCP ingestion into a local topic; with restBaseUrl (a running app with a loaded
+// config containing topic A) also measures POST /api/topics/A/publish for comparison.
+public class IngestBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        TopicManagerSingleton.get().clear();
+        AtomicLong received = new AtomicLong();
+        TopicManagerSingleton.get().getTopic("A").subscribe(new Agent() {
+            @Override
+            public String getName() {
+                return "CountAgent";
+            }
+
+            @Override
+            public String getAgentId() {
+                return "CountAgent";
+            }
+
+            @Override
+            public void reset() {
+            }
+
+            @Override
+            public void callback(String topic, Message msg) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void onClearInput(String topic) {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        try (BinaryIngestServer server = new BinaryIngestServer(new InetSocketAddress("127.0.0.1", 0))) {
+            server.start();
+            long start = System.nanoTime();
+            try (BinaryIngestClient client = new BinaryIngestClient(
+                    new InetSocketAddress("127.0.0.1", server.getPort()), 64 * 1024)) {
+                client.define(0, "A");
+                for (int i = 0; i < count; i++) {
+                    client.publish(0, i);
+                }
+            }
+            while (received.get() < count) {
+                Thread.sleep(1);
+            }
+            report("tcp", count, System.nanoTime() - start);
+            assert server.getDropped() == 0 : "Dropped " + server.getDropped();
+        }
+
+        if (args.length > 1) {
+            int restCount = Math.min(count, 20_000);
+            HttpClient http = HttpClient.newHttpClient();
+            URI uri = URI.create(args[1] + "/api/topics/A/publish");
+            long start = System.nanoTime();
+            for (int i = 0; i < restCount; i++) {
+                HttpRequest req = HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"double\",\"value\":\"" + i + "\"}"))
+                        .build();
+                http.send(req, HttpResponse.BodyHandlers.discarding());
+            }
+            report("rest", restCount, System.nanoTime() - start);
+        }
+
+        System.out.println("OK");
+    }
+
+    private static void report(String name, int count, long nanos) {
+        System.out.printf("%s: %d msgs in %.1f ms, %.0f msgs/s%n", name, count, nanos / 1e6, count / (nanos / 1e9));
+    }
+}
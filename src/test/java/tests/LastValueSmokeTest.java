@@ -0,0 +1,73 @@
+package tests;
+
+import app.ApiController;
+import app.ApiController.ConfigLoadRequest;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// The last-value cache is off unless @topic enables it, keeps the last delivered message whole (value
+// and time never come from different publishes), skips non-numeric values in bulk reads, and is
+// forgotten on clear.
+public class LastValueSmokeTest {
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        ApiController api = new ApiController(Optional.empty());
+        Map<String, Object> loaded = api.loadConfig(new ConfigLoadRequest(
+                "@topic B last-value\nconfigs.IncAgent\nA\nB\nconfigs.IncAgent\nB\nC\n"));
+        assert Boolean.TRUE.equals(loaded.get("ok")) : loaded;
+        Topic a = TopicManagerSingleton.get().getTopic("A");
+        Topic b = TopicManagerSingleton.get().getTopic("B");
+        Topic c = TopicManagerSingleton.get().getTopic("C");
+        assert b.isLastValueEnabled() && !a.isLastValueEnabled() && !c.isLastValueEnabled() : "Cache must be opt-in";
+        assert !b.hasLastValue() && b.getLastMessage() == null && b.getLastUpdateMillis() == 0;
+
+        a.publish(new Message(1));
+        api.drain(5000);
+        assert b.getLastValue() == 2 && b.getLastMessage().asDouble == 2 && b.getLastUpdateMillis() > 0;
+        assert !a.hasLastValue() && Double.isNaN(c.getLastValue()) : "Topics without the cache keep nothing";
+        assert api.getTopicValues(null).equals(Map.of("values", Map.of("B", 2.0))) : api.getTopicValues(null);
+        assert api.getTopicValues(List.of("B", "C", "missing")).equals(Map.of("values", Map.of("B", 2.0)));
+
+        b.publish(new Message("not a number"));
+        assert "not a number".equals(b.getLastMessage().asText) && Double.isNaN(b.getLastValue());
+        assert TopicManagerSingleton.get().getLastValues().isEmpty() : "Non-numeric values are left out";
+
+        // Value and time are read from one message: a reader never pairs one publish's value with
+        // another's time.
+        int count = 20_000;
+        Message[] sent = new Message[count];
+        for (int i = 0; i < count; i++) {
+            sent[i] = new Message(i);
+        }
+        AtomicBoolean torn = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                Message m = b.getLastMessage();
+                if (m != null && !Double.isNaN(m.asDouble) && sent[(int) m.asDouble].date != m.date) {
+                    torn.set(true);
+                }
+            }
+        });
+        reader.start();
+        for (Message m : sent) {
+            b.publish(m);
+        }
+        reader.join();
+        assert !torn.get();
+        assert b.getLastMessage() == sent[count - 1];
+
+        b.clear();
+        assert !b.hasLastValue() && api.getTopicValues(null).equals(Map.of("values", Map.of()));
+        b.publish(new Message(5));
+        b.setLastValueEnabled(false);
+        assert !b.hasLastValue() : "Disabling the cache forgets the value";
+
+        api.unloadConfig();
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,445 @@
+package tests;
+
+import configs.GenericConfig;
+import configs.Graph;
+import graph.Cascade;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Usage: LoadHarness [key=value ...]
+//   depth=4 width=8 fanin=3 mix=plus:2,mul:1,inc:1,dec:1,expr:1 seed=1   graph shape
+//   rate=20000 clients=1 duration=2 interval=1                          traffic (rate 0 = unthrottled)
+//   mode=java|rest url=http://localhost:8080                            driver
+//   configOut=path out=path                                             write generated config / results
+// Generates a layered DAG as a GenericConfig file, publishes random values on its input topics at the
+// target rate and prints one JSON line per interval plus a final summary. Latency is the time until
+// the cascade caused by one publish settles (java) or the /api/evaluate round trip (rest).
+public class LoadHarness {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>(Map.of(
+                "depth", "4", "width", "8", "fanin", "3", "mix", "plus:2,mul:1,inc:1,dec:1,expr:1",
+                "seed", "1", "rate", "20000", "clients", "1", "duration", "2", "interval", "1",
+                "mode", "java"));
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        int depth = Integer.parseInt(opts.get("depth"));
+        int width = Integer.parseInt(opts.get("width"));
+        int fanIn = Integer.parseInt(opts.get("fanin"));
+        String config = generate(depth, width, fanIn, opts.get("mix"), new Random(Long.parseLong(opts.get("seed"))));
+        if (opts.containsKey("configOut")) {
+            Files.writeString(Path.of(opts.get("configOut")), config);
+        }
+
+        PrintStream out = opts.containsKey("out")
+                ? new PrintStream(Files.newOutputStream(Path.of(opts.get("out"))), true)
+                : System.out;
+        boolean rest = "rest".equals(opts.get("mode"));
+        Driver driver = rest ? new RestDriver(opts.getOrDefault("url", "http://localhost:8080"), config)
+                : new JavaDriver(config);
+
+        String[] inputs = new String[width];
+        for (int i = 0; i < width; i++) {
+            inputs[i] = topicName(0, i);
+        }
+        Run run = new Run(driver, inputs, Double.parseDouble(opts.get("rate")), Integer.parseInt(opts.get("clients")));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(opts.get("duration")));
+        long intervalNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(opts.get("interval")));
+
+        out.println(json(Map.of("type", "config", "options", opts, "agents", depth * width,
+                "java", System.getProperty("java.version"), "cpus", Runtime.getRuntime().availableProcessors())));
+        Stats before = Stats.sample(run);
+        Stats first = before;
+        run.start();
+        long start = System.nanoTime();
+        long next = start + intervalNanos;
+        while (System.nanoTime() - start < durationNanos) {
+            LockSupport.parkNanos(Math.max(0, Math.min(next, start + durationNanos) - System.nanoTime()));
+            if (System.nanoTime() >= next) {
+                Stats now = Stats.sample(run);
+                out.println(json(now.since(before, "interval", run.intervalHistogram.drain())));
+                before = now;
+                next += intervalNanos;
+            }
+        }
+        run.stop();
+        driver.drain();
+        Stats end = Stats.sample(run);
+        out.println(json(end.since(first, "summary", run.totalHistogram.drain())));
+        driver.close();
+        assert run.errors.get() == 0 : "Publish errors: " + run.errors.get();
+        assert run.completed.get() > 0 : "No publish completed";
+        System.out.println("OK");
+    }
+
+    // Layer 0 holds the input topics; every agent in layer d reads from layer d - 1 and writes one
+    // topic of layer d. Binary agents take two inputs, Inc/Dec one, Expr agents fanin.
+    static String generate(int depth, int width, int fanIn, String mix, Random rnd) {
+        List<String> kinds = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.split(":");
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1]) : 1;
+            for (int i = 0; i < weight; i++) {
+                kinds.add(kv[0].trim().toLowerCase());
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int d = 1; d <= depth; d++) {
+            for (int i = 0; i < width; i++) {
+                String kind = kinds.get(rnd.nextInt(kinds.size()));
+                int arity = switch (kind) {
+                    case "plus", "mul" -> 2;
+                    case "inc", "dec" -> 1;
+                    case "expr" -> fanIn;
+                    default -> throw new IllegalArgumentException("Unknown agent kind " + kind);
+                };
+                List<String> subs = pickInputs(d - 1, width, Math.min(arity, width), i, rnd);
+                switch (kind) {
+                    case "plus" -> sb.append("configs.PlusAgent");
+                    case "mul" -> sb.append("configs.MulAgent");
+                    case "inc" -> sb.append("configs.IncAgent");
+                    case "dec" -> sb.append("configs.DecAgent");
+                    default -> sb.append("configs.ExprAgent expr=\"").append(String.join(" + ", subs)).append('"');
+                }
+                sb.append('\n').append(String.join(",", subs)).append('\n').append(topicName(d, i)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    // The agent's own column is always an input so every topic of the previous layer is consumed.
+    private static List<String> pickInputs(int layer, int width, int count, int column, Random rnd) {
+        List<String> picked = new ArrayList<>();
+        picked.add(topicName(layer, column));
+        while (picked.size() < count) {
+            String name = topicName(layer, rnd.nextInt(width));
+            if (!picked.contains(name)) {
+                picked.add(name);
+            }
+        }
+        return picked;
+    }
+
+    private static String topicName(int layer, int column) {
+        return "L" + layer + "_" + column;
+    }
+
+    interface Driver extends AutoCloseable {
+        // Publishes value on topic and reports the latency to done (possibly from another thread).
+        void publish(String topic, double value, Run run) throws Exception;
+
+        void drain() throws Exception;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    static final class JavaDriver implements Driver {
+        private final GenericConfig gc = new GenericConfig();
+        private final Path file;
+
+        JavaDriver(String config) throws Exception {
+            TopicManagerSingleton.get().clear();
+            file = Files.createTempFile("load", ".conf");
+            Files.writeString(file, config);
+            gc.setConfFile(file.toString());
+            gc.create();
+            Graph graph = Graph.current();
+            gc.fuseChains(graph);
+            gc.schedule(graph);
+        }
+
+        @Override
+        public void publish(String name, double value, Run run) {
+            Topic topic = TopicManagerSingleton.get().findTopic(name);
+            Cascade cascade = new Cascade();
+            cascade.settled().thenRun(() -> run.done(cascade.getSettleNanos()));
+            cascade.run(() -> topic.publish(new Message(value)));
+        }
+
+        @Override
+        public void drain() {
+            gc.drain(10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void close() throws IOException {
+            gc.close();
+            TopicManagerSingleton.get().clear();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static final class RestDriver implements Driver {
+        private final HttpClient http = HttpClient.newHttpClient();
+        private final String base;
+
+        RestDriver(String base, String config) throws Exception {
+            this.base = base;
+            HttpResponse<String> res = post("/api/config/load", "{\"configText\":" + quote(config) + "}");
+            if (res.statusCode() != 200 || !res.body().contains("\"ok\":true")) {
+                throw new IllegalStateException("Config load failed: " + res.body());
+            }
+        }
+
+        @Override
+        public void publish(String topic, double value, Run run) throws Exception {
+            long start = System.nanoTime();
+            HttpResponse<String> res = post("/api/evaluate", "{\"inputs\":{" + quote(topic) + ":" + value + "}}");
+            if (res.statusCode() != 200) {
+                run.errors.incrementAndGet();
+                return;
+            }
+            run.done(System.nanoTime() - start);
+        }
+
+        @Override
+        public void drain() throws Exception {
+            post("/api/drain?timeoutMs=10000", "");
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private HttpResponse<String> post(String path, String body) throws Exception {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(base + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            return http.send(req, HttpResponse.BodyHandlers.ofString());
+        }
+    }
+
+    static final class Run {
+        private final Driver driver;
+        private final String[] inputs;
+        private final double rate;
+        private final int clients;
+        private final List<Thread> threads = new ArrayList<>();
+        private volatile boolean running;
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final Histogram intervalHistogram = new Histogram();
+        final Histogram totalHistogram = new Histogram();
+
+        Run(Driver driver, String[] inputs, double rate, int clients) {
+            this.driver = driver;
+            this.inputs = inputs;
+            this.rate = rate;
+            this.clients = clients;
+        }
+
+        void start() {
+            running = true;
+            for (int c = 0; c < clients; c++) {
+                Random rnd = new Random(c);
+                Thread t = new Thread(() -> drive(rnd), "LoadHarness-" + c);
+                t.setDaemon(true);
+                threads.add(t);
+                t.start();
+            }
+        }
+
+        // Open-loop pacing: each client sends on a fixed schedule and catches up after stalls.
+        private void drive(Random rnd) {
+            long period = rate > 0 ? (long) (1e9 * clients / rate) : 0;
+            long next = System.nanoTime();
+            while (running) {
+                if (period > 0) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                        continue;
+                    }
+                    next += period;
+                }
+                try {
+                    driver.publish(inputs[rnd.nextInt(inputs.length)], rnd.nextInt(1000), this);
+                    sent.incrementAndGet();
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            for (Thread t : threads) {
+                t.join();
+            }
+        }
+
+        void done(long nanos) {
+            completed.incrementAndGet();
+            intervalHistogram.record(nanos);
+            totalHistogram.record(nanos);
+        }
+    }
+
+    record Stats(long nanos, long sent, long completed, long errors, long gcCount, long gcMillis,
+                 int threads, int peakThreads, long heapUsed) {
+        static Stats sample(Run run) {
+            long count = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
+                millis += Math.max(0, gc.getCollectionTime());
+            }
+            ThreadMXBean tm = ManagementFactory.getThreadMXBean();
+            return new Stats(System.nanoTime(), run.sent.get(), run.completed.get(), run.errors.get(), count, millis,
+                    tm.getThreadCount(), tm.getPeakThreadCount(),
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+
+        Map<String, Object> since(Stats prev, String type, long[] latency) {
+            double seconds = (nanos - prev.nanos) / 1e9;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("type", type);
+            m.put("seconds", seconds);
+            m.put("sent", sent - prev.sent);
+            m.put("completed", completed - prev.completed);
+            m.put("errors", errors - prev.errors);
+            m.put("throughput", (completed - prev.completed) / seconds);
+            m.put("latencyUs", Histogram.percentiles(latency));
+            m.put("gcCount", gcCount - prev.gcCount);
+            m.put("gcMillis", gcMillis - prev.gcMillis);
+            m.put("threads", threads);
+            m.put("peakThreads", peakThreads);
+            m.put("heapUsedBytes", heapUsed);
+            return m;
+        }
+    }
+
+    // Log-linear histogram: 32 sub-buckets per power of two, so reported values are within ~3%.
+    static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB = 1 << SUB_BITS;
+        private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+
+        void record(long nanos) {
+            counts.incrementAndGet(index(Math.max(0, nanos)));
+        }
+
+        long[] drain() {
+            long[] copy = new long[counts.length()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = counts.getAndSet(i, 0);
+            }
+            return copy;
+        }
+
+        static int index(long v) {
+            if (v < SUB) {
+                return (int) v;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return (shift + 1) * SUB + (int) ((v >>> shift) & (SUB - 1));
+        }
+
+        static long lowerBound(int index) {
+            if (index < SUB) {
+                return index;
+            }
+            int shift = index / SUB - 1;
+            return (long) (SUB + index % SUB) << shift;
+        }
+
+        static Map<String, Object> percentiles(long[] counts) {
+            long total = 0;
+            long max = 0;
+            for (int i = 0; i < counts.length; i++) {
+                total += counts[i];
+                if (counts[i] > 0) {
+                    max = lowerBound(i);
+                }
+            }
+            Map<String, Object> m = new LinkedHashMap<>();
+            for (double p : new double[] {50, 90, 99, 99.9}) {
+                long rank = (long) Math.ceil(total * p / 100);
+                long seen = 0;
+                long value = 0;
+                for (int i = 0; i < counts.length && total > 0; i++) {
+                    seen += counts[i];
+                    if (seen >= rank) {
+                        value = lowerBound(i);
+                        break;
+                    }
+                }
+                m.put("p" + (p == Math.floor(p) ? String.valueOf((int) p) : String.valueOf(p)), value / 1000.0);
+            }
+            m.put("max", max / 1000.0);
+            return m;
+        }
+    }
+
+    static String json(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            StringBuilder sb = new StringBuilder("{");
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(quote(String.valueOf(e.getKey()))).append(':').append(json(e.getValue()));
+            }
+            return sb.append('}').toString();
+        }
+        // JSON has no NaN or Infinity: an empty histogram's percentiles, say, come out as null.
+        if (value == null || (value instanceof Double d && !Double.isFinite(d))
+                || (value instanceof Float f && !Float.isFinite(f))) {
+            return "null";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return String.valueOf(value);
+        }
+        return quote(String.valueOf(value));
+    }
+
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,98 @@
+package tests;
+
+import configs.GenericConfig;
+import configs.Graph;
+import configs.Partitioning;
+import graph.InputLimiter;
+import graph.LoadShedder;
+import graph.Message;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// A rate limit admits its burst and sheds the rest of a tight publish loop; the shedder samples
+// its inputs down while p99 is over target and recovers once it is back under.
+public class LoadSheddingSmokeTest {
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("shed", ".conf");
+        Files.write(config, Arrays.asList(
+                "@topic A rate=100 burst=10",
+                "@shed p99-ms=5 interval-ms=60000",
+                "configs.IncAgent", "A", "B",
+                "configs.IncAgent", "E", "F"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        assert gc.getLoadShedder() == null && !shedderRunning() : "The shedder must wait for schedule()";
+        gc.schedule(Graph.current());
+
+        Topic a = TopicManagerSingleton.get().getTopic("A");
+        int accepted = 0;
+        for (int i = 0; i < 200; i++) {
+            accepted += a.publish(new Message(i)) ? 1 : 0;
+        }
+        InputLimiter limiter = a.getLimiter();
+        assert accepted >= 10 && accepted < 50 : "Rate limit admitted " + accepted;
+        assert limiter.getAdmitted() == accepted && limiter.getShedByRate() == 200 - accepted;
+
+        LoadShedder shedder = gc.getLoadShedder();
+        assert shedder.getInputs().size() == 2 : "Expected inputs A and E but got " + shedder.getInputs().size();
+        for (int i = 0; i < 10; i++) {
+            shedder.adjust(TimeUnit.MILLISECONDS.toNanos(50), 0);
+        }
+        assert shedder.getAdmitFraction() < 0.05 : "Fraction " + shedder.getAdmitFraction();
+        Topic e = TopicManagerSingleton.get().getTopic("E");
+        for (int i = 0; i < 1000; i++) {
+            e.publish(new Message(i));
+        }
+        long shed = e.getLimiter().getShedByLoad();
+        assert shed > 900 : "Shed only " + shed + " of 1000";
+        for (int i = 0; i < 30; i++) {
+            shedder.adjust(-1, 0);
+        }
+        assert shedder.getAdmitFraction() == 1.0 && e.publish(new Message(1));
+
+        gc.close();
+        assert !shedderRunning();
+
+        // Built after retainPartition, the shedder only sees this partition's inputs.
+        TopicManagerSingleton.get().clear();
+        Files.write(config, Arrays.asList("@shed p99-ms=5", "configs.IncAgent", "A", "B", "configs.IncAgent", "E", "F"));
+        gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        Partitioning plan = Partitioning.of(Graph.current(), 2);
+        int local = plan.partitionOf("IncAgent[A->B]");
+        assert plan.partitionOf("IncAgent[E->F]") != local : "Expected the two chains on different partitions";
+        gc.retainPartition(plan, local);
+        gc.schedule(Graph.current());
+        assert gc.getLoadShedder().getInputs().size() == 1
+                && gc.getLoadShedder().getInputs().get(0).name.equals("A") : "Shedder kept a dropped input";
+        gc.close();
+
+        // A create() that fails leaves nothing running.
+        TopicManagerSingleton.get().clear();
+        Files.write(config, Arrays.asList("@shed p99-ms=5", "@bogus", "configs.IncAgent", "A", "B"));
+        GenericConfig failed = new GenericConfig();
+        failed.setConfFile(config.toString());
+        boolean rejected = false;
+        try {
+            failed.create();
+        } catch (IllegalArgumentException ex) {
+            rejected = true;
+        }
+        assert rejected && !shedderRunning() && failed.getRunningAgents().isEmpty();
+
+        TopicManagerSingleton.get().clear();
+        Files.deleteIfExists(config);
+        System.out.println("OK");
+    }
+
+    private static boolean shedderRunning() {
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().equals("LoadShedder"));
+    }
+}
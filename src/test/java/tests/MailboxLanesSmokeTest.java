@@ -0,0 +1,78 @@
+package tests;
+
+import graph.Agent;
+import graph.Message;
+import graph.ParallelAgent;
+import graph.Simulation;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.util.ArrayList;
+import java.util.List;
+
+// Mailbox lanes under the simulation, with everything queued in one step: control signals overtake
+// data and discard what they supersede (a clear its topic's values, a reset all of them), priority
+// data overtakes ordinary data.
+public class MailboxLanesSmokeTest {
+    public static void main(String[] args) {
+        List<String> cleared = run(false);
+        assert cleared.equals(List.of("clearQ", "P1", "R1", "Q3")) : "Unexpected lane order " + cleared;
+        List<String> reset = run(true);
+        assert reset.equals(List.of("reset", "Q3")) : "A reset should discard every queued value " + reset;
+        System.out.println("OK");
+    }
+
+    // Publishes Q1 R1 Q2 P1 (P has priority), then clears Q or resets the agent, then publishes Q3.
+    private static List<String> run(boolean reset) {
+        TopicManagerSingleton.get().clear();
+        List<String> seen = new ArrayList<>();
+        ParallelAgent pa = new ParallelAgent(new Agent() {
+            public String getName() {
+                return "Recorder";
+            }
+
+            public String getAgentId() {
+                return "Recorder";
+            }
+
+            public void reset() {
+                seen.add("reset");
+            }
+
+            public void callback(String topic, Message msg) {
+                seen.add(topic + (int) msg.asDouble);
+            }
+
+            public void onClearInput(String topic) {
+                seen.add("clear" + topic);
+            }
+
+            public void close() {
+            }
+        }, 16);
+        Topic p = TopicManagerSingleton.get().getTopic("P");
+        Topic q = TopicManagerSingleton.get().getTopic("Q");
+        Topic r = TopicManagerSingleton.get().getTopic("R");
+        p.setPriority(1);
+        for (Topic t : List.of(p, q, r)) {
+            t.subscribe(pa);
+        }
+        Simulation sim = new Simulation(3, 0, 1_000);
+        sim.attach(List.of(pa));
+        sim.at(0, () -> {
+            q.publish(new Message(1));
+            r.publish(new Message(1));
+            q.publish(new Message(2));
+            p.publish(new Message(1));
+            if (reset) {
+                pa.reset();
+            } else {
+                q.clear();
+            }
+            q.publish(new Message(3));
+        });
+        sim.run();
+        pa.close();
+        TopicManagerSingleton.get().clear();
+        return seen;
+    }
+}
@@ -0,0 +1,102 @@
+package tests;
+
+import configs.GenericConfig;
+import graph.Cascade;
+import graph.MemoCache;
+import graph.ParallelAgent;
+import graph.PureAgent;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// MemoCache hits on NaN results and evicts least recently used entries; pure agents suppress
+// unchanged outputs until a clear (of an input or of the output) or reset, and ExprAgent serves
+// repeated inputs from its cache.
+public class MemoCacheSmokeTest {
+    public static void main(String[] args) throws Exception {
+        MemoCache cache = new MemoCache(4, 2);
+        cache.put(new double[] {0, 0}, Double.NaN);
+        int slot = cache.find(new double[] {0, 0});
+        assert slot >= 0 && Double.isNaN(cache.value(slot)) : "A NaN result must be a hit";
+        for (int i = 1; i <= 3; i++) {
+            cache.put(new double[] {i, i}, i);
+        }
+        cache.find(new double[] {0, 0});
+        cache.put(new double[] {4, 4}, 4);
+        assert cache.find(new double[] {1, 1}) < 0 : "Least recently used entry should be evicted";
+        assert cache.find(new double[] {0, 0}) >= 0 && cache.find(new double[] {4, 4}) >= 0;
+        assert cache.getHits() == 4 && cache.getMisses() == 1 : cache.getHits() + "/" + cache.getMisses();
+
+        MemoCache none = new MemoCache(0, 2);
+        none.put(new double[] {1, 2}, 3);
+        assert none.find(new double[] {1, 2}) < 0 && none.getMisses() == 0 : "Capacity 0 caches nothing";
+        assert new MemoCache(1000, 1).capacity() == 1024 && new MemoCache(1, 1).capacity() == 4
+                && new MemoCache(1024, 1).capacity() == 1024 : "Capacity should round up to a power of two";
+
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("memo", ".conf");
+        Files.write(config, Arrays.asList(
+                "configs.PlusAgent pure", "A,B", "S",
+                "configs.ExprAgent expr=\"(A - B) / (A - B)\" memo=64", "A,B", "Q"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        List<Double> sums = new ArrayList<>();
+        TopicManagerSingleton.get().getTopic("S").addObserver(m -> sums.add(m.asDouble));
+
+        evaluate(Map.of("A", 1.0, "B", 2.0));
+        evaluate(Map.of("A", 1.0));
+        assert sums.equals(List.of(3.0)) : "Unchanged sum should be suppressed: " + sums;
+        TopicManagerSingleton.get().getTopic("A").clear();
+        evaluate(Map.of("A", 1.0));
+        assert sums.equals(List.of(3.0, 3.0)) : "First sum after a clear must be published: " + sums;
+
+        MemoCache exprMemo = null;
+        for (ParallelAgent pa : gc.getRunningAgents()) {
+            if (pa.getAgentId().startsWith("ExprAgent") && pa.getAgent() instanceof PureAgent pure) {
+                exprMemo = pure.getMemo();
+            }
+        }
+        assert exprMemo != null && exprMemo.getHits() == 2 && exprMemo.getMisses() == 1
+                : "Expected 2 hits, 1 miss for repeated (A, B)";
+        evaluate(Map.of("B", 1.0));
+        evaluate(Map.of("B", 1.0));
+        assert exprMemo.getHits() == 3 && exprMemo.getMisses() == 2 : "0/0 = NaN must be cached like any result";
+
+        gc.close();
+
+        // Diamond A -> S -> P, A -> P: clearing S makes P drop it, so the same sum must be published
+        // again or P never recovers. memo=0 pure keeps suppression without a cache.
+        TopicManagerSingleton.get().clear();
+        Files.write(config, Arrays.asList(
+                "configs.ExprAgent expr=\"A + B\" memo=0 pure", "A,B", "S",
+                "configs.MulAgent", "S,A", "P"));
+        gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        PureAgent sum = (PureAgent) gc.getRunningAgents().get(0).getAgent();
+        assert sum.getMemo() != null && sum.getMemo().capacity() == 0 : "memo=0 pure should keep suppression";
+        List<Double> products = new ArrayList<>();
+        TopicManagerSingleton.get().getTopic("P").addObserver(m -> products.add(m.asDouble));
+        Cascade.evaluate(Map.of("A", 1.0, "B", 2.0), List.of("P"), 2, TimeUnit.SECONDS);
+        int before = products.size();
+        TopicManagerSingleton.get().getTopic("S").clear();
+        Cascade.evaluate(Map.of("A", 1.0, "B", 2.0), List.of("P"), 2, TimeUnit.SECONDS);
+        assert products.size() > before && products.stream().allMatch(v -> v == 3.0)
+                : "P should recover after its input S was cleared: " + products;
+
+        gc.close();
+        TopicManagerSingleton.get().clear();
+        Files.deleteIfExists(config);
+        System.out.println("OK");
+    }
+
+    private static void evaluate(Map<String, Double> inputs) throws Exception {
+        Cascade.evaluate(inputs, List.of("S", "Q"), 2, TimeUnit.SECONDS);
+    }
+}
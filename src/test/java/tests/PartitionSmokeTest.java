@@ -0,0 +1,90 @@
+package tests;
+
+import app.PartitionNode;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs partition 0 of a six-agent chain in this JVM and partition 1 in a child JVM, then checks
+// that every value published here arrives at the far end of the chain, once and in order.
+public class PartitionSmokeTest {
+    public static void main(String[] args) throws Exception {
+        List<String> lines = new ArrayList<>();
+        String[] topics = {"A", "B", "C", "D", "E", "F", "G"};
+        for (int i = 0; i + 1 < topics.length; i++) {
+            lines.add("configs.IncAgent");
+            lines.add(topics[i]);
+            lines.add(topics[i + 1]);
+        }
+        Path config = Files.createTempFile("partition", ".conf");
+        Files.write(config, lines);
+
+        String peers = "127.0.0.1:" + freePort() + ",127.0.0.1:" + freePort();
+        Process child = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-ea", "-cp", System.getProperty("java.class.path"),
+                "app.PartitionNode", config.toString(), "1", peers)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        BufferedReader childOut = new BufferedReader(new InputStreamReader(child.getInputStream()));
+        PrintWriter childIn = new PrintWriter(child.getOutputStream(), true);
+
+        try (PartitionNode node = new PartitionNode(config.toString(), 0, PartitionNode.parsePeers(peers))) {
+            node.start();
+            String ready = childOut.readLine();
+            assert ready != null && ready.startsWith("READY ") : "Child did not start: " + ready;
+            assert node.getPlan().getCutTopics() == 1 : "Expected one cut topic but got " + node.getPlan().getCutTopics();
+            int local = node.getConfig().getRunningAgents().size();
+            int remote = Integer.parseInt(ready.split(" ")[1]);
+            assert local + remote == 6 && local > 0 && remote > 0 : "Agents split " + local + "/" + remote;
+
+            childIn.println("trace G");
+            assert "TRACING G".equals(childOut.readLine());
+
+            int count = 500;
+            for (int i = 1; i <= count; i++) {
+                TopicManagerSingleton.get().getTopic("A").publish(new Message(i));
+            }
+            String expected = "{\"G\":" + (double) (count + 6) + "}";
+            String values = null;
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (System.currentTimeMillis() < deadline) {
+                childIn.println("values G");
+                values = childOut.readLine();
+                if (expected.equals(values)) {
+                    break;
+                }
+                Thread.sleep(20);
+            }
+            assert expected.equals(values) : "Expected " + expected + " but got " + values;
+            StringBuilder sequence = new StringBuilder("[");
+            for (int i = 1; i <= count; i++) {
+                sequence.append(i > 1 ? "," : "").append((double) (i + 6));
+            }
+            childIn.println("traced G");
+            String traced = childOut.readLine();
+            assert sequence.append(']').toString().equals(traced) : "G out of order or incomplete: " + traced;
+            assert node.getBridge().getErrors() == 0 : "Bridge errors: " + node.getBridge().getErrors();
+        } finally {
+            childIn.println("quit");
+            child.waitFor();
+            Files.deleteIfExists(config);
+        }
+
+        System.out.println("OK");
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package tests;
+
+import app.ApiController;
+import app.ApiController.ConfigLoadRequest;
+import app.ApiController.PublishRequest;
+import graph.Agent;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.ResponseEntity;
+
+// POST /api/topics/{name}/publish through the controller: a full mailbox is answered with 429 without
+// blocking, ?await= returns the settled values, and a cascade that does not settle in time gets a 504.
+public class PublishEndpointSmokeTest {
+    static volatile CountDownLatch gate = new CountDownLatch(1);
+
+    // Forwards its input to its output once the gate opens.
+    public static class GateAgent implements Agent {
+        private final String in;
+        private final String out;
+
+        public GateAgent(String[] subs, String[] pubs) {
+            in = subs[0];
+            out = pubs[0];
+            TopicManagerSingleton.get().getTopic(in).subscribe(this);
+            TopicManagerSingleton.get().getTopic(out).addPublisher(this);
+        }
+
+        @Override
+        public String getName() {
+            return "GateAgent";
+        }
+
+        @Override
+        public String getAgentId() {
+            return "GateAgent[" + in + "->" + out + "]";
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            TopicManagerSingleton.get().getTopic(out).publish(msg, getAgentId());
+        }
+
+        @Override
+        public void onClearInput(String topic) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        ApiController api = new ApiController(Optional.empty());
+        api.loadConfig(new ConfigLoadRequest("tests.PublishEndpointSmokeTest$GateAgent\nA\nB\nconfigs.IncAgent\nB\nC\n"));
+
+        // The first message occupies the gate's worker; the rest fill its mailbox.
+        int accepted = 0;
+        ResponseEntity<Map<String, Object>> response;
+        long start = System.nanoTime();
+        do {
+            response = publish(api, accepted, null, 1000);
+            accepted++;
+        } while (response.getStatusCode().value() == 200 && accepted < 1000);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assert response.getStatusCode().value() == 429 : "Expected 429 once the mailbox is full, after " + accepted;
+        assert "Downstream queue full".equals(response.getBody().get("error")) : response.getBody();
+        assert elapsedMs < 5000 : "Publishing into a full mailbox blocked for " + elapsedMs + " ms";
+
+        ResponseEntity<Map<String, Object>> late = publish(api, 0, List.of("C"), 100);
+        assert late.getStatusCode().value() == 429 : "Still full, must not wait for the timeout";
+
+        gate.countDown();
+        api.drain(5000);
+        ResponseEntity<Map<String, Object>> settled = publish(api, 41, List.of("C"), 5000);
+        assert settled.getStatusCode().value() == 200 : settled.getStatusCode();
+        assert values(settled).get("C").equals(42.0) : settled.getBody();
+
+        gate = new CountDownLatch(1);
+        ResponseEntity<Map<String, Object>> timedOut = publish(api, 1, List.of("C"), 200);
+        assert timedOut.getStatusCode().value() == 504 : timedOut.getStatusCode();
+        assert Boolean.FALSE.equals(timedOut.getBody().get("ok"));
+        gate.countDown();
+
+        api.unloadConfig();
+        System.out.println("OK");
+    }
+
+    private static ResponseEntity<Map<String, Object>> publish(ApiController api, double value, List<String> await,
+                                                               long timeoutMs) throws Exception {
+        return api.publish("A", new PublishRequest("double", Double.toString(value)), await, timeoutMs)
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> values(ResponseEntity<Map<String, Object>> response) {
+        return (Map<String, Object>) response.getBody().get("values");
+    }
+}
@@ -0,0 +1,98 @@
+package tests;
+
+import app.ApiController;
+import app.ApiController.ConfigLoadRequest;
+import app.ApiController.PublishRequest;
+import graph.Agent;
+import graph.Message;
+import graph.TopicManagerSingleton;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// /api/quiescence and /api/drain against a slow agent: while its queue holds work the graph is not
+// quiescent, a short drain times out after its timeout, and a long one returns once the queue is empty.
+public class QuiescenceSmokeTest {
+    static final long CALLBACK_MS = 30;
+
+    // Sleeps CALLBACK_MS per message, then forwards it.
+    public static class SlowAgent implements Agent {
+        private final String in;
+        private final String out;
+
+        public SlowAgent(String[] subs, String[] pubs) {
+            in = subs[0];
+            out = pubs[0];
+            TopicManagerSingleton.get().getTopic(in).subscribe(this);
+            TopicManagerSingleton.get().getTopic(out).addPublisher(this);
+        }
+
+        @Override
+        public String getName() {
+            return "SlowAgent";
+        }
+
+        @Override
+        public String getAgentId() {
+            return "SlowAgent[" + in + "->" + out + "]";
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+            try {
+                Thread.sleep(CALLBACK_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            TopicManagerSingleton.get().getTopic(out).publish(msg, getAgentId());
+        }
+
+        @Override
+        public void onClearInput(String topic) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        ApiController api = new ApiController(Optional.empty());
+        api.loadConfig(new ConfigLoadRequest(
+                "@topic C last-value\ntests.QuiescenceSmokeTest$SlowAgent\nA\nB\nconfigs.IncAgent\nB\nC\n"));
+        assert Boolean.TRUE.equals(api.getQuiescence().get("quiescent")) : "Nothing published yet";
+
+        int count = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            api.publish("A", new PublishRequest("double", Integer.toString(i)), null, 1000).get();
+        }
+        Map<String, Object> busy = api.getQuiescence();
+        assert Boolean.FALSE.equals(busy.get("quiescent")) && ((Number) busy.get("inFlight")).longValue() > 0 : busy;
+
+        long shortStart = System.nanoTime();
+        Map<String, Object> timedOut = api.drain(10);
+        long shortMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - shortStart);
+        assert Boolean.FALSE.equals(timedOut.get("ok")) : "Drain returned before the queue emptied: " + timedOut;
+        assert shortMs >= 9 && shortMs < count * CALLBACK_MS : "Short drain took " + shortMs + " ms";
+
+        Map<String, Object> drained = api.drain(5000);
+        long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assert Boolean.TRUE.equals(drained.get("ok")) && ((Number) drained.get("inFlight")).longValue() == 0 : drained;
+        assert totalMs >= (count - 1) * CALLBACK_MS : "Drain returned after " + totalMs + " ms, before the queue emptied";
+        assert TopicManagerSingleton.get().getTopic("C").getLastValue() == count : "Last publish not processed";
+
+        Map<String, Object> idle = api.getQuiescence();
+        assert Boolean.TRUE.equals(idle.get("quiescent")) : idle;
+        assert ((Number) idle.get("settledPublishes")).longValue() == count : idle;
+
+        api.unloadConfig();
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,96 @@
+package tests;
+
+import configs.GenericConfig;
+import configs.Graph;
+import graph.Agent;
+import graph.Message;
+import graph.ParallelAgent;
+import graph.Topic;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Agents on one shared worker: a callback that throws is skipped without stalling the worker, and an
+// outside publisher is held to the mailbox capacity while the chain behind it still drains.
+public class SchedulerSmokeTest {
+    // Forwards non-negative values, throws on negative ones.
+    public static class FailAgent implements Agent {
+        private final String in;
+        private final String out;
+
+        public FailAgent(String[] subs, String[] pubs) {
+            in = subs[0];
+            out = pubs[0];
+            TopicManagerSingleton.get().getTopic(in).subscribe(this);
+            TopicManagerSingleton.get().getTopic(out).addPublisher(this);
+        }
+
+        @Override
+        public String getName() {
+            return "FailAgent";
+        }
+
+        @Override
+        public String getAgentId() {
+            return "FailAgent[" + in + "->" + out + "]";
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void callback(String topic, Message msg) {
+            if (msg.asDouble < 0) {
+                throw new IllegalStateException("negative input");
+            }
+            TopicManagerSingleton.get().getTopic(out).publish(msg, getAgentId());
+        }
+
+        @Override
+        public void onClearInput(String topic) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("scheduler", ".conf");
+        Files.write(config, Arrays.asList("@scheduler workers=1", "@topic D last-value",
+                "tests.SchedulerSmokeTest$FailAgent exec=async", "A", "B",
+                "configs.IncAgent exec=async", "B", "C",
+                "configs.IncAgent exec=async", "C", "D"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        assert gc.schedule(Graph.current()) == 3 : "Expected all agents on the shared worker";
+        ParallelAgent first = null;
+        for (ParallelAgent pa : gc.getRunningAgents()) {
+            if (pa.getAgent() instanceof FailAgent) {
+                first = pa;
+            }
+        }
+
+        Topic a = TopicManagerSingleton.get().getTopic("A");
+        a.publish(new Message(-1));
+        int count = 5000;
+        int maxQueued = 0;
+        for (int i = 1; i <= count; i++) {
+            a.publish(new Message(i));
+            maxQueued = Math.max(maxQueued, first.getQueueSize());
+        }
+        assert maxQueued <= first.getCapacity() : "Outside publisher overfilled the mailbox: " + maxQueued;
+        assert gc.drain(10, TimeUnit.SECONDS) : "Worker stalled";
+        assert TopicManagerSingleton.get().getTopic("D").getLastValue() == count + 2;
+
+        gc.close();
+        TopicManagerSingleton.get().clear();
+        Files.deleteIfExists(config);
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,141 @@
+package tests;
+
+import configs.GenericConfig;
+import graph.Cascade;
+import graph.TopicManagerSingleton;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Usage: StartupBenchmark [key=value ...]
+//   mode=engine|app runs=3                         what to start, how often
+//   jvmArgs="-XX:SharedArchiveFile=target/app.jsa" extra flags for the started JVM (space separated)
+//   jar=target/design-mvc-1.0.0.jar port=18080     app mode: the Spring Boot jar and its port
+// Starts a fresh JVM per run with a preloaded diamond config and measures the time from process
+// start until the first publish (A=1) has produced its output (D=2). engine: GenericConfig and
+// Cascade on this classpath; app: the jar with --cascade.config.preload, probed via /api/evaluate.
+public class StartupBenchmark {
+    private static final List<String> CONFIG = List.of(
+            "configs.IncAgent", "A", "B",
+            "configs.DecAgent", "A", "C",
+            "configs.PlusAgent", "B,C", "D");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && "probe".equals(args[0])) {
+            probe(args[1]);
+            return;
+        }
+        Map<String, String> opts = new LinkedHashMap<>(Map.of(
+                "mode", "engine", "runs", "3", "jvmArgs", "", "jar", "target/design-mvc-1.0.0.jar", "port", "18080"));
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        Path config = Files.createTempFile("startup", ".conf");
+        Files.write(config, CONFIG);
+        boolean app = "app".equals(opts.get("mode"));
+        int runs = Integer.parseInt(opts.get("runs"));
+        double[] millis = new double[runs];
+        try {
+            for (int i = 0; i < runs; i++) {
+                millis[i] = app ? runApp(opts, config) : runEngine(opts, config);
+                System.out.printf("{\"type\":\"run\",\"mode\":\"%s\",\"run\":%d,\"firstPublishMillis\":%.1f}%n",
+                        opts.get("mode"), i + 1, millis[i]);
+            }
+        } finally {
+            Files.deleteIfExists(config);
+        }
+        Arrays.sort(millis);
+        System.out.printf("{\"type\":\"summary\",\"mode\":\"%s\",\"jvmArgs\":\"%s\",\"runs\":%d,"
+                        + "\"minMillis\":%.1f,\"medianMillis\":%.1f,\"maxMillis\":%.1f}%n",
+                opts.get("mode"), opts.get("jvmArgs"), runs, millis[0], millis[runs / 2], millis[runs - 1]);
+        System.out.println("OK");
+    }
+
+    private static List<String> command(Map<String, String> opts) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String flag : opts.get("jvmArgs").trim().split("\\s+")) {
+            if (!flag.isEmpty()) {
+                cmd.add(flag);
+            }
+        }
+        return cmd;
+    }
+
+    private static double runEngine(Map<String, String> opts, Path config) throws Exception {
+        List<String> cmd = command(opts);
+        cmd.addAll(List.of("-cp", System.getProperty("java.class.path"), "tests.StartupBenchmark", "probe", config.toString()));
+        long start = System.nanoTime();
+        Process child = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+            String line = out.readLine();
+            double elapsed = (System.nanoTime() - start) / 1e6;
+            assert "D=2.0".equals(line) : "Unexpected probe output " + line;
+            return elapsed;
+        } finally {
+            child.waitFor(5, TimeUnit.SECONDS);
+            child.destroyForcibly();
+        }
+    }
+
+    // Child side of engine mode: what the app does at startup, minus Spring.
+    private static void probe(String config) throws Exception {
+        GenericConfig.preloadAgentClasses();
+        TopicManagerSingleton.get().clear();
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config);
+        gc.create();
+        Map<String, Double> out = Cascade.evaluate(Map.of("A", 1.0), List.of("D"), 5, TimeUnit.SECONDS);
+        System.out.println("D=" + out.get("D"));
+        System.out.flush();
+        gc.close();
+    }
+
+    private static double runApp(Map<String, String> opts, Path config) throws Exception {
+        String port = opts.get("port");
+        List<String> cmd = command(opts);
+        cmd.addAll(List.of("-jar", opts.get("jar"), "--server.port=" + port, "--cascade.config.preload=" + config));
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/evaluate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"inputs\":{\"A\":1},\"outputs\":[\"D\"]}"))
+                .build();
+        long start = System.nanoTime();
+        Process child = new ProcessBuilder(cmd).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            while (child.isAlive() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(60)) {
+                try {
+                    HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+                    if (res.statusCode() == 200 && res.body().contains("2.0")) {
+                        return (System.nanoTime() - start) / 1e6;
+                    }
+                } catch (java.io.IOException notYet) {
+                    // server not listening yet
+                }
+                Thread.sleep(2);
+            }
+            throw new IllegalStateException("App did not answer within 60 s (exit " + (child.isAlive() ? "-" : child.exitValue()) + ")");
+        } finally {
+            child.destroy();
+            child.waitFor(10, TimeUnit.SECONDS);
+            child.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package tests;
+
+import configs.GenericConfig;
+import graph.Message;
+import graph.Topic;
+import graph.TopicFilter;
+import graph.TopicManagerSingleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Dead-band and dedupe hold under racing publishers: of many threads publishing at once, exactly one
+// value gets through a dedupe or min-interval filter. @topic rejects unknown options.
+public class TopicFilterSmokeTest {
+    public static void main(String[] args) throws Exception {
+        TopicFilter band = new TopicFilter(false, 0.5, 0, 0);
+        assert band.accept(new Message(1.0)) && !band.accept(new Message(1.4)) && band.accept(new Message(1.6));
+        assert band.accept(new Message("text")) : "Non-numeric messages always pass";
+        band.reset();
+        assert band.accept(new Message(1.6)) : "reset forgets the last value";
+        assert band.getDropped() == 1;
+
+        for (int round = 0; round < 50; round++) {
+            assert race(new TopicFilter(true, 0, 0, 0), false) == 1 : "dedupe let a repeated value through";
+            assert race(new TopicFilter(false, 0, 0, TimeUnit.SECONDS.toNanos(10)), true) == 1
+                    : "min-interval let two values through";
+        }
+
+        TopicManagerSingleton.get().clear();
+        Path config = Files.createTempFile("filter", ".conf");
+        Files.write(config, Arrays.asList("@topic A dedupe min-intervl-ms=5", "configs.IncAgent", "A", "B"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        boolean rejected = false;
+        try {
+            gc.create();
+        } catch (IllegalArgumentException e) {
+            rejected = e.getMessage().contains("min-intervl-ms");
+        }
+        assert rejected : "Misspelled @topic option should be rejected";
+        gc.close();
+        assert rejects(config, "@topic A burst=5", "burst=5") : "burst without rate should be rejected";
+        assert rejects(config, "@topic A", "@topic A") : "@topic without options should be rejected";
+
+        TopicManagerSingleton.get().clear();
+        Files.write(config, Arrays.asList("@topic A dedupe", "configs.IncAgent", "A", "B"));
+        gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        gc.create();
+        Topic a = TopicManagerSingleton.get().getTopic("A");
+        a.publish(new Message(1));
+        a.publish(new Message(1));
+        assert a.getFilter().getDropped() == 1 : "Expected one dropped duplicate";
+        gc.close();
+        TopicManagerSingleton.get().clear();
+        Files.deleteIfExists(config);
+        System.out.println("OK");
+    }
+
+    // True if loading a config with this directive fails with a message containing the given text.
+    private static boolean rejects(Path config, String directive, String text) throws Exception {
+        TopicManagerSingleton.get().clear();
+        Files.write(config, Arrays.asList(directive, "configs.IncAgent", "A", "B"));
+        GenericConfig gc = new GenericConfig();
+        gc.setConfFile(config.toString());
+        try {
+            gc.create();
+        } catch (IllegalArgumentException e) {
+            return e.getMessage().contains(text);
+        } finally {
+            gc.close();
+        }
+        return false;
+    }
+
+    // Publishes from 8 threads released together; distinct=false sends the same value from all.
+    // Returns how many were accepted.
+    private static int race(TopicFilter filter, boolean distinct) throws InterruptedException {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger accepted = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            Message msg = new Message(distinct ? t : 7);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    if (filter.accept(msg)) {
+                        accepted.incrementAndGet();
+                    }
+                } catch (InterruptedException ignored) {
+                }
+                done.countDown();
+            });
+            thread.start();
+        }
+        start.countDown();
+        done.await();
+        return accepted.get();
+    }
+}
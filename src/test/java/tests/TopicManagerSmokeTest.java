@@ -0,0 +1,60 @@
+package tests;
+
+import graph.Topic;
+import graph.TopicManager;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+// Racing getTopic calls create each name once and hand out dense ids in creation order; getTopics()
+// is a snapshot, and clear() starts the ids over.
+public class TopicManagerSmokeTest {
+    public static void main(String[] args) throws Exception {
+        TopicManager manager = new TopicManager();
+        assert manager.findTopic("A") == null && manager.getTopic(0) == null;
+
+        int threads = 8;
+        int names = 500;
+        ConcurrentHashMap<String, Topic> seen = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        boolean[] conflict = new boolean[1];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 37;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < names; i++) {
+                    String name = "T" + ((i + offset) % names);
+                    Topic topic = manager.getTopic(name);
+                    Topic first = seen.putIfAbsent(name, topic);
+                    if (first != null && first != topic) {
+                        conflict[0] = true;
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        long before = manager.getVersion();
+        start.countDown();
+        done.await();
+        assert !conflict[0] : "A name was created twice";
+        assert manager.getTopicCount() == names && manager.getVersion() - before == names;
+
+        List<Topic> snapshot = manager.getTopics();
+        for (int i = 0; i < names; i++) {
+            Topic topic = snapshot.get(i);
+            assert topic.getId() == i && manager.getTopic(i) == topic && manager.findTopic(topic.name) == topic;
+        }
+        manager.getTopic("late");
+        assert snapshot.size() == names && manager.getTopics().size() == names + 1 : "getTopics() must be a snapshot";
+
+        manager.clear();
+        assert manager.getTopicCount() == 0 && manager.findTopic("T0") == null && manager.getTopic(0) == null;
+        assert manager.getTopic("B").getId() == 0 : "Ids start over after clear()";
+        System.out.println("OK");
+    }
+}